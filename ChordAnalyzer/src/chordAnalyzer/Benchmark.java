@@ -0,0 +1,87 @@
+package chordAnalyzer;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+
+/**
+ * Benchmarks of the application, run separately from the application itself with the name of the benchmark as the argument, e.g.
+ * <code>java -cp ChordAnalyzer.jar chordAnalyzer.Benchmark startup</code>. Results are printed to the error output.
+ * <ul>
+ * <li><code>startup</code> starts the application, runs one analysis as soon as the catalogs are loaded and exits, so that the start can be
+ * measured repeatably (e.g. with and without a class data sharing archive). With <code>-DchordAnalyzer.startupTiming=true</code> the times of
+ * the first paint and of the loaded catalogs and images are printed as well.</li>
+ * <li><code>allocation</code> measures memory allocated in the steady state by the analysis of a progression followed by selection of each
+ * found scale, i.e. its tones and suitable chords, and prints the average per analysis. Requires a JVM providing
+ * <code>com.sun.management.ThreadMXBean</code>.</li>
+ * </ul>
+ */
+public class Benchmark {
+
+    private static final String PROGRESSION = "C, Ami, Dmi7, G7, Fmaj, Emi, A7";
+    private static final int ALLOCATION_ROUNDS = 20000;
+
+    private Benchmark() {
+    }
+
+    /**
+     * Measures the start of the application up to the first analysis.
+     */
+    public static void startup() {
+        final long start = System.nanoTime();
+        ChordAnalyzer.start(new Runnable() {
+            @Override
+            public void run() {
+                ChordAnalyzer.analyzeInput();
+                System.err.println("startup: first analysis after " + (System.nanoTime() - start) / 1000000 + " ms");
+                System.exit(0);
+            }
+        });
+    }
+
+    /**
+     * Measures memory allocated by analyses and selections of the found scales.
+     */
+    public static void allocation() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            System.err.println("allocation: not supported by this JVM");
+            return;
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        long thread = Thread.currentThread().getId();
+        ChordAnalyzer.loadChords();
+        Chord[] chords = ChordAnalyzer.getChordParser().parseProgression(PROGRESSION).toArray(new Chord[0]);
+        int found = 0;
+        long allocated = 0;
+        //the first half warms up the caches and the compiler, the second one is measured
+        for (int round = 0; round < 2 * ALLOCATION_ROUNDS; round++) {
+            if (round == ALLOCATION_ROUNDS) {
+                allocated = threads.getThreadAllocatedBytes(thread);
+            }
+            List<WeightedScale> result = ChordAnalyzer.findScales(chords);
+            for (WeightedScale w : result) {
+                found += w.getTones().length + ChordAnalyzer.findSuitableChords(w).length;
+            }
+        }
+        allocated = threads.getThreadAllocatedBytes(thread) - allocated;
+        System.err.println("allocation: " + allocated / ALLOCATION_ROUNDS + " bytes per analysis ("
+                + found / (2 * ALLOCATION_ROUNDS) + " tones and chord groups)");
+    }
+
+    /**
+     * Runs a benchmark.
+     *
+     * @param args name of the benchmark, <code>startup</code> or <code>allocation</code>
+     */
+    public static void main(String[] args) {
+        if (args.length == 1 && args[0].equals("startup")) {
+            startup();
+        } else if (args.length == 1 && args[0].equals("allocation")) {
+            allocation();
+        } else {
+            System.err.println("Použití: chordAnalyzer.Benchmark startup|allocation");
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package chordAnalyzer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Compiled binary form of the text files <code>chords</code> and <code>scales</code>. The binary file is produced from the text file when the text file
+ * is loaded for the first time or after it was modified, and on later starts it is opened using <code>FileChannel.map</code>. Opening the file only
+ * checks the header, entries are decoded from the mapped memory when they are accessed (see {@link #asScales()}), so the time of opening does not
+ * depend on the size of the catalog and the pages are shared by all running instances of the application.
+ * <br/>
+ * The file consists of a header, a table of entries, a table of intervals and a string table:
+ * <ol>
+ * <li>header: magic number <code>CHCA</code>, format version (int), number of entries (int), offset of the table of intervals (int), offset
+ * of the string table (int)</li>
+ * <li>entry: offset of the name in the string table (int), length of the name in bytes (short), 12-bit tonal mask (short), offset of the
+ * intervals in the table of intervals (int), number of the intervals (short), unused (short)</li>
+ * <li>table of intervals: tonal masks of all entries as given in the text file, one signed byte per interval</li>
+ * <li>string table: names of all entries in UTF-8</li>
+ * </ol>
+ * The 12-bit mask is the pitch class set of the intervals (see {@link Scale#toBits(int[])}) for bit operations, the intervals themselves are
+ * kept, because intervals larger than an octave (e.g. the ninth of a chord) matter for voicing.
+ */
+public class CatalogFile {
+
+    private static final int MAGIC = 0x43484341;
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 20;
+    private static final int ENTRY_SIZE = 16;
+
+    private final ByteBuffer buffer;
+    private final int size;
+    private final int intervalTable;
+    private final int stringTable;
+
+    private CatalogFile(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a compiled catalog file.");
+        }
+        size = buffer.getInt(8);
+        intervalTable = buffer.getInt(12);
+        stringTable = buffer.getInt(16);
+        if (size < 0 || intervalTable != HEADER_SIZE + size * ENTRY_SIZE || stringTable < intervalTable || stringTable > buffer.capacity()) {
+            throw new IOException("Corrupted catalog file.");
+        }
+    }
+
+    /**
+     * Maps a compiled catalog file into memory.
+     *
+     * @param binary compiled catalog file
+     * @return opened catalog
+     * @throws IOException if the file cannot be read or is not a compiled catalog
+     */
+    public static CatalogFile open(File binary) throws IOException {
+        try (FileChannel channel = FileChannel.open(binary.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new CatalogFile(mapped);
+        }
+    }
+
+    /**
+     * Writes a compiled catalog file.
+     *
+     * @param names names of the entries
+     * @param masks tonal masks of the entries, intervals from -128 to 127 semitones
+     * @param binary file to be written
+     * @throws IOException if the file cannot be written or a mask cannot be stored
+     */
+    public static void compile(String[] names, int[][] masks, File binary) throws IOException {
+        byte[][] encoded = new byte[names.length][];
+        int stringsLength = 0;
+        int intervalsLength = 0;
+        for (int i = 0; i < names.length; i++) {
+            encoded[i] = names[i].getBytes("UTF-8");
+            stringsLength += encoded[i].length;
+            intervalsLength += masks[i].length;
+            for (int interval : masks[i]) {
+                if (interval < Byte.MIN_VALUE || interval > Byte.MAX_VALUE) {
+                    throw new IOException("Interval " + interval + " of '" + names[i] + "' out of range.");
+                }
+            }
+        }
+        int intervalTable = HEADER_SIZE + names.length * ENTRY_SIZE;
+        int stringTable = intervalTable + intervalsLength;
+        ByteBuffer out = ByteBuffer.allocate(stringTable + stringsLength);
+        out.putInt(MAGIC).putInt(VERSION).putInt(names.length).putInt(intervalTable).putInt(stringTable);
+        int offset = 0;
+        int intervalOffset = 0;
+        for (int i = 0; i < names.length; i++) {
+            out.putInt(offset).putShort((short) encoded[i].length).putShort((short) Scale.toBits(masks[i]));
+            out.putInt(intervalOffset).putShort((short) masks[i].length).putShort((short) 0);
+            offset += encoded[i].length;
+            intervalOffset += masks[i].length;
+        }
+        for (int[] mask : masks) {
+            for (int interval : mask) {
+                out.put((byte) interval);
+            }
+        }
+        for (byte[] name : encoded) {
+            out.put(name);
+        }
+        out.flip();
+
+        //written to a temporary file first, so that running instances never map a half written catalog
+        //the name is unique, because instances started at once (e.g. workers of a batch) may compile the same file
+        File tmp = File.createTempFile(binary.getName(), ".tmp", binary.getAbsoluteFile().getParentFile());
+        try {
+            try (FileChannel channel = FileChannel.open(tmp.toPath(), StandardOpenOption.WRITE)) {
+                while (out.hasRemaining()) {
+                    channel.write(out);
+                }
+            }
+            Files.move(tmp.toPath(), binary.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            tmp.delete();
+        }
+    }
+
+    /**
+     * Checks whether a compiled catalog is newer than the text file it was compiled from.
+     *
+     * @param text text file
+     * @param binary compiled catalog file
+     * @return <code>true</code> if the compiled catalog can be used instead of the text file
+     */
+    public static boolean isUpToDate(File text, File binary) {
+        return binary.isFile() && binary.lastModified() >= text.lastModified();
+    }
+
+    /**
+     * Gets number of entries in the catalog.
+     *
+     * @return number of entries
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets tonal mask of an entry as a 12-bit pitch class set.
+     *
+     * @param i index of the entry
+     * @return bit representation of the mask
+     */
+    public int getBits(int i) {
+        return buffer.getShort(HEADER_SIZE + i * ENTRY_SIZE + 6) & 0xFFF;
+    }
+
+    /**
+     * Gets tonal mask of an entry as given in the text file, i.e. semitones above the root.
+     *
+     * @param i index of the entry
+     * @return tonal mask
+     */
+    public int[] getMask(int i) {
+        int entry = HEADER_SIZE + i * ENTRY_SIZE;
+        int offset = intervalTable + buffer.getInt(entry + 8);
+        int[] mask = new int[buffer.getShort(entry + 12) & 0xFFFF];
+        for (int j = 0; j < mask.length; j++) {
+            mask[j] = buffer.get(offset + j);
+        }
+        return mask;
+    }
+
+    /**
+     * Gets the entries as scales. The list is backed by the mapped file and a scale is decoded when it is accessed for the first time, so
+     * creating the list does not depend on the size of the catalog. Decoded scales are remembered, so the same index always gives the same
+     * object, also when the list is shared by more threads.
+     *
+     * @return unmodifiable list of scales
+     */
+    public List<Scale> asScales() {
+        return new ScaleList();
+    }
+
+    private class ScaleList extends AbstractList<Scale> implements RandomAccess {
+
+        private final AtomicReferenceArray<Scale> decoded = new AtomicReferenceArray<>(size);
+
+        @Override
+        public Scale get(int i) {
+            Scale scale = decoded.get(i);
+            if (scale == null) {
+                //the first decoded scale wins, so that concurrent callers get the same object
+                decoded.compareAndSet(i, null, new Scale(getName(i), getMask(i)));
+                scale = decoded.get(i);
+            }
+            return scale;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * Gets name of an entry, decoded from the string table.
+     *
+     * @param i index of the entry
+     * @return name of the entry
+     */
+    public String getName(int i) {
+        int entry = HEADER_SIZE + i * ENTRY_SIZE;
+        byte[] bytes = new byte[buffer.getShort(entry + 4) & 0xFFFF];
+        ByteBuffer b = buffer.duplicate();
+        b.position(stringTable + buffer.getInt(entry));
+        b.get(bytes);
+        try {
+            return new String(bytes, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -4,7 +4,8 @@ package chordAnalyzer;
  * Structure representing a chord specified by a root tone and a name. Unlike {@link Scale}, the tonal mask of a chord is not stored in the <code>Chord</code> object, because it 
  * would be redundant. All known chord shapes are already stored in a static variable of the main class {ChordAnalyzer} in a <code>HashMap</code>, because they are needed
  * during a construction of the GUI, in combo boxes in chord input panel. Therefore any changes in the <code>chords</code> file require a restart of the application to take effect, 
- * while changes in <code>scales</code> file take effect immediately during next analysis.
+ * while changes in <code>scales</code> file take effect immediately during next analysis. After the chords are loaded, one <code>Chord</code> object is created
+ * for every chord type and every root tone and these objects are shared by the whole application (see <code>ChordAnalyzer.getChord</code>).
  */
 public class Chord {
 
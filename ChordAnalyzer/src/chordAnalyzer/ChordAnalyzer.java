@@ -4,21 +4,34 @@ import java.awt.CardLayout;
 import java.awt.Color;
 import java.awt.Container;
 import java.awt.Dimension;
+import java.awt.FlowLayout;
 import java.awt.Font;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.Insets;
+import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.*;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import javax.sound.midi.*;
 import javax.sound.midi.MidiUnavailableException;
 import javax.swing.*;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 import javax.swing.event.ListSelectionEvent;
 import javax.swing.event.ListSelectionListener;
 import javax.swing.table.DefaultTableModel;
@@ -71,6 +84,168 @@ public class ChordAnalyzer {
     private final static String PIANO = "Klavír";
     private static JPanel fretboard;
     private static LinkedHashMap<String, int[]> knownChords = new LinkedHashMap<>();
+    /**
+     * Names of known chords in the order of the <code>chords</code> file, with
+     * their masks as 12-bit pitch class sets in <code>chordBits</code>.
+     */
+    private static String[] chordNames = new String[0];
+    private static int[] chordBits = new int[0];
+    /**
+     * Interned {@link Chord} objects, indexed by the position of the chord in
+     * <code>chordNames</code> and by the root tone. Replaced as a whole when
+     * the chords are loaded, volatile so that the table is completely
+     * visible to threads preparing details of scales.
+     */
+    private static volatile Chord[][] chordTable = new Chord[0][];
+    private static ChordParser chordParser = new ChordParser(new String[0]);
+    private static ChordRecommender chordRecommender = new ChordRecommender(new int[0]);
+    private static VoiceLeading voiceLeading = new VoiceLeading(new String[0], new int[0]);
+    /**
+     * Number of recommended chords displayed.
+     */
+    private static final int RECOMMENDED_CHORDS = 8;
+    private static JLabel recommendationsLabel;
+    private static JLabel voiceLeadingLabel;
+    /**
+     * Results of <code>findSuitableChords</code>, indexed by the bit mask of a
+     * scale times 12 plus its root. Depends only on <code>knownChords</code>.
+     * The method is called from the event dispatch thread and from background
+     * threads (MIDI export, prefetching of details), so the results are
+     * published through an <code>AtomicReferenceArray</code>.
+     */
+    private static volatile AtomicReferenceArray<Chord[][]> suitableChordsCache = new AtomicReferenceArray<>(12 << 12);
+    /**
+     * Scales loaded from the file <code>scales</code> together with the time
+     * of the last modification of the file, so that it is parsed again only
+     * when it changes.
+     */
+    private static List<Scale> scalesCache;
+    private static long scalesModified;
+    /**
+     * Known scales divided into classes of modes, computed from
+     * <code>scalesCache</code>.
+     */
+    private static List<ScaleClass> scaleClassesCache;
+    private static List<Scale> scaleClassesSource;
+    /**
+     * Interned known scales on all roots, built from
+     * <code>scaleClassesCache</code>.
+     */
+    private static RootedScaleTable rootedScalesCache;
+    /**
+     * Accuracies computed by <code>findScales</code>, parallel to
+     * <code>rootedScalesCache</code>. Analyses run on more threads, so each
+     * thread reuses its own array.
+     */
+    private static final ThreadLocal<double[]> accuraciesBuffer = new ThreadLocal<>();
+    /**
+     * Index of scales for finding the nearest scales, built from
+     * <code>scaleIndexSource</code>.
+     */
+    private static ScaleIndex scaleIndexCache;
+    private static List<ScaleClass> scaleIndexSource;
+    /**
+     * Query engine over known scales, built from
+     * <code>scaleQuerySource</code>.
+     */
+    private static ScaleQuery scaleQueryCache;
+    private static List<ScaleClass> scaleQuerySource;
+    /**
+     * Set-class properties of known scales and chords, built from
+     * <code>setClassSource</code> and <code>setClassChords</code>.
+     */
+    private static SetClassIndex setClassCache;
+    private static List<Scale> setClassSource;
+    private static int[] setClassChords;
+    /**
+     * Compatibility of known chords with known scales, built from
+     * <code>compatibilitySource</code> and <code>compatibilityChords</code>.
+     */
+    private static CompatibilityMatrix compatibilityCache;
+    private static List<Scale> compatibilitySource;
+    private static int[] compatibilityChords;
+    /**
+     * Number of nearest scales displayed when no scale is suitable.
+     */
+    private static final int NEAREST_SCALES = 10;
+    /**
+     * Number of keys written for each progression by the modes without GUI.
+     */
+    private static final int REPORTED_KEYS = 3;
+    /**
+     * Result of the last analysis, kept for switching between grouped and
+     * ungrouped display of modes.
+     */
+    private static List<WeightedScale> lastResult = new ArrayList<>();
+    /**
+     * Chords the last result was found for, they differ from the entered
+     * chords when the chords were changed without analyzing them.
+     */
+    private static Chord[] lastResultChords = new Chord[0];
+    private static JCheckBox groupModesBox;
+    /**
+     * Delay in milliseconds after the last change of the chords before the
+     * live analysis starts, so that a burst of changes costs one analysis.
+     */
+    private static final int LIVE_ANALYSIS_DELAY = 300;
+    private static JCheckBox liveAnalysisBox;
+    private static Timer liveAnalysisTimer;
+    /**
+     * Number of the last scheduled live analysis, results of older analyses
+     * are dropped. Accessed only from the event dispatch thread.
+     */
+    private static int liveAnalysisCount = 0;
+    private static List<Chord> liveAnalysisChords;
+    /**
+     * Ranking of scales for <code>liveRankingChords</code>, only the added
+     * chords are scored when the progression is extended at the end.
+     * Accessed only from the event dispatch thread.
+     */
+    private static LiveScaleRanking liveRanking;
+    private static List<ScaleClass> liveRankingClasses;
+    private static List<Chord> liveRankingChords;
+    /**
+     * Set while <code>fillChords</code> changes the chord input fields, so
+     * that every single change does not run <code>chordsChanged</code>.
+     */
+    private static boolean fillingChords = false;
+    /**
+     * MIDI keyboard the chords are played on, <code>null</code> if the MIDI
+     * input is off.
+     */
+    private static MidiDevice midiInput;
+    /**
+     * Number of guitar voicings displayed for each suitable chord.
+     */
+    private static final int VOICINGS_SHOWN = 3;
+    private static GuitarVoicings guitarVoicings = new GuitarVoicings(Tuning.STANDARD.getStrings(), GuitarPanel.DEFAULT_FRETS, GuitarVoicings.HAND_SPAN);
+    /**
+     * Details of the scales visible in the table are prepared in advance,
+     * together with this number of rows above and below them.
+     */
+    private static final int PREFETCH_ADJACENT = 5;
+    private static final int PREFETCH_CAPACITY = 64;
+    private static PianoVoicings pianoVoicings = new PianoVoicings();
+    private static DetailsPrefetcher detailsPrefetcher = new DetailsPrefetcher(PREFETCH_CAPACITY, guitarVoicings, VOICINGS_SHOWN);
+    /**
+     * Threads loading catalogs and images in the background during start of
+     * the application.
+     */
+    private static ExecutorService backgroundLoader;
+    /**
+     * Controls which need the known chords and are enabled only after the
+     * file <code>chords</code> is loaded.
+     */
+    private static JComponent[] catalogControls = new JComponent[0];
+    /**
+     * If the system property <code>chordAnalyzer.startupTiming</code> is set
+     * to true, times of important events during start of the application are
+     * printed to the error output. The start is measured repeatably by
+     * {@link Benchmark}.
+     */
+    private static final boolean STARTUP_TIMING = Boolean.getBoolean("chordAnalyzer.startupTiming");
+    private static long startTime = System.nanoTime();
+    private static Set<String> startupEvents = new HashSet<>();
     private static WeightedScale actualScale = null;
 
     /**
@@ -208,34 +383,54 @@ public class ChordAnalyzer {
                 }
                 chordsPanel.revalidate();
                 chordsPanel.repaint();
+                chordsChanged();
             }
         }
     }
 
     /**
-     * Triggers the chord analysis. Creates a
-     * <code>Chord</code> array from user input, finds suitable scales, sorts
-     * them descendingly by their accuracy and displays them in a table.
+     * Triggers the chord analysis, see <code>analyzeInput</code>.
      */
     private static class analyzeActionListener implements ActionListener {
 
         @Override
         public void actionPerformed(ActionEvent ae) {
-            Chord[] chords = new Chord[chordCounter];
-            int i = 0;
-            for (JPanel panel : chordsInput) {
-                chords[i++] = new Chord(
-                        Tone.values()[((JComboBox) panel.getComponent(1)).getSelectedIndex()],
-                        (String) ((JComboBox) panel.getComponent(2)).getSelectedItem());
+            analyzeInput();
+        }
+    }
 
-            }
-            //find suitable scales...
-            List<WeightedScale> result = findScales(chords);
-            //..sort them descendingly by accuracy...
-            Collections.sort(result, Collections.reverseOrder());
-            //...and display them in a table
-            displayScales(result);
+    /**
+     * Analyzes the entered chords. Creates a <code>Chord</code> array from
+     * user input, finds suitable scales, sorts them descendingly by their
+     * accuracy and displays them in a table.
+     */
+    static void analyzeInput() {
+        Chord[] chords = getInputChords();
+        detailsPrefetcher.cancel();
+        //find suitable scales...
+        List<WeightedScale> result = analyze(chords);
+        //...and display them in a table
+        displayScales(result, chords);
+        displayRecommendations(chords, result);
+
+        reportStartup("first analysis");
+    }
+
+    /**
+     * Finds suitable scales for given chords and sorts them descendingly by
+     * their accuracy. If no scale is suitable, the nearest scales are
+     * returned instead (see <code>findNearestScales</code>).
+     *
+     * @param chords an array of {@link Chord} objects
+     * @return sorted list of scales
+     */
+    public static List<WeightedScale> analyze(Chord[] chords) {
+        List<WeightedScale> result = findScales(chords);
+        Collections.sort(result, Collections.reverseOrder());
+        if (result.isEmpty() && chords.length > 0) {
+            result = findNearestScales(chords, NEAREST_SCALES);
         }
+        return result;
     }
 
     /**
@@ -253,10 +448,20 @@ public class ChordAnalyzer {
         static JLabel mask = new JLabel("");
         static JLabel intervalsLabel = new JLabel("Intervaly:");
         static JLabel intervals = new JLabel("");
+        static JLabel setClassLabel = new JLabel("Třída:");
+        static JLabel setClass = new JLabel("");
         static JLabel chordsLabel = new JLabel("Použitelné akordy:");
         static JPanel playableChordsHolder = new JPanel(new GridBagLayout());
-        static JLabel[] playableChords = new JLabel[0];
+        static List<JLabel> playableChords = new ArrayList<>();
         static JButton play = new JButton("Přehrát");
+        static JButton saveMidi = new JButton("Uložit MIDI");
+        static JButton exportMidi = new JButton("Uložit všechny do MIDI");
+        static JComboBox<String> comboPosition = new JComboBox<>();
+        static JComboBox<String> comboVoicingChord = new JComboBox<>();
+        static JComboBox<String> comboVoicing = new JComboBox<>();
+        //chords offered in comboVoicingChord after the first item, and keys of the voicings offered in comboVoicing
+        static List<Chord> voicingChords = new ArrayList<>();
+        static List<int[]> voicingKeys = new ArrayList<>();
         static PianoPanel pianoPanel;
         static GuitarPanel guitarPanel;
         static int count = 0;
@@ -272,68 +477,165 @@ public class ChordAnalyzer {
          * <code>PianoPanel</code> and
          * <code>GuitarPanel</code> objects with a parameter being
          * <code>actualScale</code>.
+         * <br/>
+         * The texts are usually prepared in advance by
+         * {@link DetailsPrefetcher}.
          */
         static public void updateDisplayedScale() {
             name.setText(actualScale.toString());
 
-            StringBuilder sbTones = new StringBuilder();
-            StringBuilder sbMask = new StringBuilder();
-            StringBuilder sbIntervals = new StringBuilder();
-
-            int last = 0;
+            ScaleDetails details = detailsPrefetcher.get(actualScale);
+            tones.setText(details.getTones());
+            mask.setText(details.getMask());
+            intervals.setText(details.getIntervals());
+            setClass.setText(details.getSetClass());
+
+            //Suitable chords are divided into multiple lines, one for each root tone.
+            //Number of root tones changes for each scale, labels are reused and only the missing ones are added to the holder.
+            Chord[][] crdss = details.getChords();
+            while (playableChords.size() < crdss.length) {
+                JLabel chord = new JLabel();
+                GridBagConstraints c = new GridBagConstraints(0, playableChords.size(), 1, 1, 1.0, 1.0,
+                        GridBagConstraints.NORTHWEST, GridBagConstraints.NONE, new Insets(0, 0, 0, 0), 0, 0);
+                playableChordsHolder.add(chord, c);
+                playableChords.add(chord);
+            }
+            int i = 0;
+            for (; i < crdss.length; i++) {
+                JLabel chord = playableChords.get(i);
+                chord.setText(details.getChordText(i));
+                //tooltip with the best guitar voicings of the chords
+                chord.setToolTipText(details.getVoicingText(i));
+                chord.setVisible(true);
+            }
+            //labels left from scales with more root tones are hidden, GridBagLayout ignores them
+            for (; i < playableChords.size(); i++) {
+                playableChords.get(i).setVisible(false);
+            }
 
-            for (int i : actualScale.getMask()) {
-                sbTones.append(Tone.values()[(actualScale.getRoot().ordinal() + i) % 12].toString()).append(" ");
-                sbMask.append(Integer.toString(i)).append(" - ");
-                sbIntervals.append(Integer.toString(i - last)).append(" - ");
-                last = i;
+            //update visual representation of the scale on guitar fretboard and piano keyboard
+            if (pianoPanel != null) {
+                pianoPanel.setScale(actualScale);
+            }
+            if (guitarPanel != null) {
+                guitarPanel.setScale(actualScale);
+                updatePositions();
             }
-            tones.setText(sbTones.substring(0, sbTones.length() - 1)); //removing the last space
-            mask.setText(sbMask.substring(0, sbMask.length() - 3)); //removing the last " - "
-            intervals.setText(sbIntervals.substring(0, sbIntervals.length() - 3)); //removing the last " - "
+            updateVoicingChords(crdss);
 
+            panel.repaint();
+        }
 
-            //Suitable chords are divided into multiple lines, one for each root tone. 
-            //Number of root tones changes for each scale, so it must be recreated every time a new scale is selected.
-            Chord[][] crdss = findSuitableChords(actualScale);
-            playableChords = new JLabel[crdss.length];
-            int i = 0;
-            StringBuilder sbChords;
+        /**
+         * Fills the combo box of chords for piano voicings with the suitable
+         * chords of the current scale.
+         *
+         * @param crdss suitable chords of the scale
+         */
+        static void updateVoicingChords(Chord[][] crdss) {
+            voicingChords.clear();
+            List<String> items = new ArrayList<>();
+            items.add("Akord na klavíru");
             for (Chord[] crds : crdss) {
-                sbChords = new StringBuilder();
                 for (Chord crd : crds) {
-                    sbChords.append(crd.getRoot().toString()).append(crd.getName()).append(", ");
+                    voicingChords.add(crd);
+                    items.add(crd.getRoot().toString() + crd.getName());
                 }
-                playableChords[i++] = new JLabel(sbChords.substring(0, sbChords.length() - 2)); //removing the last comma
             }
+            comboVoicingChord.setModel(new DefaultComboBoxModel<>(items.toArray(new String[0])));
+            comboVoicingChord.setSelectedIndex(0);
+        }
 
-            //remove old chords
-            panel.remove(playableChordsHolder);
+        /**
+         * Fills the combo box of voicings with the voicings of the selected
+         * chord in all inversions and styles (see {@link PianoVoicings}) and
+         * marks the first of them on the piano keyboard.
+         */
+        static void updateVoicings() {
+            voicingKeys.clear();
+            List<String> items = new ArrayList<>();
+            int selected = comboVoicingChord.getSelectedIndex();
+            if (selected > 0) {
+                Chord chord = voicingChords.get(selected - 1);
+                for (int inversion = 0; inversion < PianoVoicings.getInversions(chord); inversion++) {
+                    int[][] voicings = pianoVoicings.find(chord, inversion);
+                    for (PianoVoicings.Style style : PianoVoicings.Style.values()) {
+                        int[] keys = voicings[style.ordinal()];
+                        if (keys != null) {
+                            voicingKeys.add(keys);
+                            items.add(style + ", " + (inversion == 0 ? "základní tvar" : inversion + ". obrat")
+                                    + ": " + PianoVoicings.format(keys));
+                        }
+                    }
+                }
+            }
+            comboVoicing.setModel(new DefaultComboBoxModel<>(items.toArray(new String[0])));
+            comboVoicing.setEnabled(!items.isEmpty());
+            if (!items.isEmpty()) {
+                comboVoicing.setSelectedIndex(0);
+            } else if (pianoPanel != null) {
+                pianoPanel.setVoicing(null);
+            }
+        }
 
-            //add new array of JLabels to GUI
-            playableChordsHolder = new JPanel(new GridBagLayout());
-            i = 0;
-            GridBagConstraints c;
-            for (JLabel chord : playableChords) {
-                c = new GridBagConstraints(0, (i++), 1, 1, 1.0, 1.0,
-                        GridBagConstraints.NORTHWEST, GridBagConstraints.NONE, new Insets(0, 0, 0, 0), 0, 0);
-                //  chord.setBorder(BorderFactory.createLineBorder(Color.BLACK, 1));
-                playableChordsHolder.add(chord, c);
+        /**
+         * Saves the displayed scale and its suitable chords to a MIDI file
+         * chosen by user (see {@link MidiExporter}).
+         */
+        static void saveMidi() {
+            if (actualScale == null) {
+                return;
             }
-            
-            c = new GridBagConstraints(3, 1, 1, 4, 0, 1.0,
-                    GridBagConstraints.NORTHWEST, GridBagConstraints.VERTICAL, new Insets(0, 10, 20, 40), 0, 0);
-            panel.add(playableChordsHolder, c);
+            JFileChooser chooser = new JFileChooser();
+            chooser.setSelectedFile(new File(MidiExporter.fileName(actualScale)));
+            if (chooser.showSaveDialog(frame) != JFileChooser.APPROVE_OPTION) {
+                return;
+            }
+            try {
+                MidiExporter.write(actualScale, findSuitableChords(actualScale), chooser.getSelectedFile());
+            } catch (IOException ex) {
+                showMidiExportError(ex);
+            }
+        }
 
-            //update visual representation of the scale on guitar fretboard and piano keyboard
-            if (pianoPanel != null) {
-                pianoPanel.setScale(actualScale);
+        /**
+         * Saves all the scales of the last result, each with its suitable
+         * chords, to MIDI files in a directory chosen by user. Files are
+         * written in the background.
+         */
+        static void exportMidi() {
+            final List<WeightedScale> scales = lastResult;
+            if (scales.isEmpty()) {
+                return;
             }
-            if (guitarPanel != null) {
-                guitarPanel.setScale(actualScale);
+            JFileChooser chooser = new JFileChooser();
+            chooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+            if (chooser.showSaveDialog(frame) != JFileChooser.APPROVE_OPTION) {
+                return;
             }
+            final File directory = chooser.getSelectedFile();
+            backgroundLoader.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        MidiExporter.exportAll(scales, directory, Runtime.getRuntime().availableProcessors());
+                    } catch (final IOException ex) {
+                        SwingUtilities.invokeLater(new Runnable() {
+                            @Override
+                            public void run() {
+                                showMidiExportError(ex);
+                            }
+                        });
+                    }
+                }
+            });
+        }
 
-            panel.repaint();
+        static void showMidiExportError(IOException ex) {
+            JOptionPane.showMessageDialog(frame,
+                    "Soubor MIDI nelze uložit: " + ex.getMessage(),
+                    "Chyba při ukládání MIDI",
+                    JOptionPane.ERROR_MESSAGE);
         }
 
         /**
@@ -359,7 +661,25 @@ public class ChordAnalyzer {
             c = new GridBagConstraints(0, 1, 2, 1, 0, 0.1,
                     GridBagConstraints.NORTHWEST, GridBagConstraints.NONE, new Insets(0, 40, 10, 10), 0, 0);
             play.addActionListener(new PlayActionListener());
-            panel.add(play, c);
+            saveMidi.addActionListener(new ActionListener() {
+                @Override
+                public void actionPerformed(ActionEvent ae) {
+                    saveMidi();
+                }
+            });
+            exportMidi.addActionListener(new ActionListener() {
+                @Override
+                public void actionPerformed(ActionEvent ae) {
+                    exportMidi();
+                }
+            });
+            JPanel buttons = new JPanel(new FlowLayout(FlowLayout.LEFT, 0, 0));
+            buttons.add(play);
+            buttons.add(Box.createHorizontalStrut(10));
+            buttons.add(saveMidi);
+            buttons.add(Box.createHorizontalStrut(10));
+            buttons.add(exportMidi);
+            panel.add(buttons, c);
 
             c = new GridBagConstraints(0, 2, 1, 1, 0, 0.1,
                     GridBagConstraints.NORTHWEST, GridBagConstraints.NONE, new Insets(0, 40, 3, 15), 0, 0);
@@ -380,21 +700,31 @@ public class ChordAnalyzer {
             panel.add(mask, c);
 
             c = new GridBagConstraints(0, 4, 1, 1, 0, 0.1,
-                    GridBagConstraints.NORTHWEST, GridBagConstraints.NONE, new Insets(0, 40, 15, 15), 0, 0);
+                    GridBagConstraints.NORTHWEST, GridBagConstraints.NONE, new Insets(0, 40, 3, 15), 0, 0);
             intervalsLabel.setFont(new Font(Font.DIALOG, Font.BOLD, 15));
             panel.add(intervalsLabel, c);
 
             c = new GridBagConstraints(1, 4, 1, 1, 0, 0.1,
-                    GridBagConstraints.NORTHWEST, GridBagConstraints.NONE, new Insets(3, 0, 15, 5), 0, 0);
+                    GridBagConstraints.NORTHWEST, GridBagConstraints.NONE, new Insets(3, 0, 3, 5), 0, 0);
             panel.add(intervals, c);
 
+            c = new GridBagConstraints(0, 5, 1, 1, 0, 0.1,
+                    GridBagConstraints.NORTHWEST, GridBagConstraints.NONE, new Insets(0, 40, 15, 15), 0, 0);
+            setClassLabel.setFont(new Font(Font.DIALOG, Font.BOLD, 15));
+            setClassLabel.setToolTipText("Prvotvar, intervalový vektor a počet transpozic zobrazujících stupnici na sebe");
+            panel.add(setClassLabel, c);
+
+            c = new GridBagConstraints(1, 5, 1, 1, 0, 0.1,
+                    GridBagConstraints.NORTHWEST, GridBagConstraints.NONE, new Insets(3, 0, 15, 5), 0, 0);
+            panel.add(setClass, c);
+
             c = new GridBagConstraints(2, 1, 1, 3, 0, 1.0,
                     GridBagConstraints.NORTHWEST, GridBagConstraints.NONE, new Insets(0, 40, 0, 15), 0, 0);
             chordsLabel.setFont(new Font(Font.DIALOG, Font.BOLD, 15));
             panel.add(chordsLabel, c);
 
             c = new GridBagConstraints(3, 1, 1, 4, 0, 1.0,
-                    GridBagConstraints.NORTHWEST, GridBagConstraints.VERTICAL, new Insets(0, 10, 20, 15), 0, 0);
+                    GridBagConstraints.NORTHWEST, GridBagConstraints.VERTICAL, new Insets(0, 10, 20, 40), 0, 0);
             panel.add(playableChordsHolder, c);
 
             //radioButtons for switching between guitar and piano display in a CardLayout
@@ -426,37 +756,157 @@ public class ChordAnalyzer {
             instruments.add(radioGuitar);
             instrumentsPanel.add(radioGuitar, c);
 
-            c = new GridBagConstraints(0, 5, 1, 1, 0, 1.0,
+            //tuning and length of the guitar neck
+            final JComboBox<Tuning> comboTuning = new JComboBox<>(Tuning.PRESETS);
+            final JComboBox<Integer> comboFrets = new JComboBox<>(new Integer[]{GuitarPanel.DEFAULT_FRETS, 24});
+            ActionListener tuningListener = new ActionListener() {
+                @Override
+                public void actionPerformed(ActionEvent ae) {
+                    changeTuning((Tuning) comboTuning.getSelectedItem(), (Integer) comboFrets.getSelectedItem());
+                }
+            };
+            comboTuning.addActionListener(tuningListener);
+            comboFrets.addActionListener(tuningListener);
+            c = new GridBagConstraints(0, 2, 1, 1, 0, 0,
+                    GridBagConstraints.WEST, GridBagConstraints.NONE, new Insets(5, 0, 0, 0), 0, 0);
+            instrumentsPanel.add(comboTuning, c);
+            c = new GridBagConstraints(0, 3, 1, 1, 0, 0,
+                    GridBagConstraints.WEST, GridBagConstraints.NONE, new Insets(5, 0, 0, 0), 0, 0);
+            instrumentsPanel.add(comboFrets, c);
+
+            //highlighted position of the scale on the guitar neck
+            comboPosition.addActionListener(new ActionListener() {
+                @Override
+                public void actionPerformed(ActionEvent ae) {
+                    if (guitarPanel != null) {
+                        guitarPanel.setPosition(comboPosition.getSelectedIndex() - 1);
+                    }
+                }
+            });
+            c = new GridBagConstraints(0, 4, 1, 1, 0, 0,
+                    GridBagConstraints.WEST, GridBagConstraints.NONE, new Insets(5, 0, 0, 0), 0, 0);
+            instrumentsPanel.add(comboPosition, c);
+
+            //voicing of a suitable chord marked on the piano keyboard
+            comboVoicingChord.addActionListener(new ActionListener() {
+                @Override
+                public void actionPerformed(ActionEvent ae) {
+                    updateVoicings();
+                }
+            });
+            comboVoicing.addActionListener(new ActionListener() {
+                @Override
+                public void actionPerformed(ActionEvent ae) {
+                    int selected = comboVoicing.getSelectedIndex();
+                    if (pianoPanel != null && selected >= 0 && selected < voicingKeys.size()) {
+                        pianoPanel.setVoicing(voicingKeys.get(selected));
+                    }
+                }
+            });
+            comboVoicing.setEnabled(false);
+            c = new GridBagConstraints(0, 5, 1, 1, 0, 0,
+                    GridBagConstraints.WEST, GridBagConstraints.NONE, new Insets(15, 0, 0, 0), 0, 0);
+            instrumentsPanel.add(comboVoicingChord, c);
+            c = new GridBagConstraints(0, 6, 1, 1, 0, 0,
+                    GridBagConstraints.WEST, GridBagConstraints.NONE, new Insets(5, 0, 0, 0), 0, 0);
+            instrumentsPanel.add(comboVoicing, c);
+
+            c = new GridBagConstraints(0, 6, 1, 1, 0, 1.0,
                     GridBagConstraints.SOUTHWEST, GridBagConstraints.NONE, new Insets(0, 40, 80, 0), 0, 0);
             panel.add(instrumentsPanel, c);
 
             //adding the guitar fretboard and piano keyboard into the CardLayout
-            c = new GridBagConstraints(1, 5, 3, 2, 1.0, 1.0,
+            c = new GridBagConstraints(1, 6, 3, 2, 1.0, 1.0,
                     GridBagConstraints.SOUTH, GridBagConstraints.NONE, new Insets(20, 0, 20, 40), 0, 0);
+            //only dimensions of the images are read here, the images are decoded in the background
             fretboard = new JPanel(new CardLayout());
             try {
                 pianoPanel = new PianoPanel();
                 fretboard.add(pianoPanel, PIANO);
+                loadImageInBackground(pianoPanel, "piano.jpg");
             } catch (IOException ex) {
-                JOptionPane.showMessageDialog(frame,
-                        "Chyba při načítání obrázku 'piano.jpg'.",
-                        "Chyba při načítání obrázku.",
-                        JOptionPane.ERROR_MESSAGE);
+                showImageError("piano.jpg");
             }
             try {
                 guitarPanel = new GuitarPanel();
+                detailsPrefetcher.setInstrument(guitarVoicings, guitarPanel.getScalePositions());
                 fretboard.add(guitarPanel, GUITAR);
+                loadImageInBackground(guitarPanel, "guitar.jpg");
             } catch (IOException ex) {
-                JOptionPane.showMessageDialog(frame,
-                        "Chyba při načítání obrázku 'guitar.jpg'.",
-                        "Chyba při načítání obrázku.",
-                        JOptionPane.ERROR_MESSAGE);
+                showImageError("guitar.jpg");
             }
 
             panel.add(fretboard, c);
 
             return panel;
         }
+
+        /**
+         * Fills the combo box of positions with the positions of the current
+         * scale, keeping the selected position if the scale has it.
+         */
+        static void updatePositions() {
+            int selected = comboPosition.getSelectedIndex();
+            String[] items = new String[guitarPanel.getPositionCount() + 1];
+            items[0] = "Všechny polohy";
+            for (int i = 1; i < items.length; i++) {
+                items[i] = "Poloha " + i;
+            }
+            comboPosition.setModel(new DefaultComboBoxModel<>(items));
+            comboPosition.setSelectedIndex(selected > 0 && selected < items.length ? selected : 0);
+        }
+
+        /**
+         * Changes the guitar displayed on the guitar panel and used for
+         * searching chord voicings.
+         *
+         * @param tuning tuning of the guitar
+         * @param frets number of frets
+         */
+        static void changeTuning(Tuning tuning, int frets) {
+            guitarVoicings = new GuitarVoicings(tuning.getStrings(), frets, GuitarVoicings.HAND_SPAN);
+            if (guitarPanel != null) {
+                guitarPanel.setTuning(tuning, frets);
+            }
+            detailsPrefetcher.setInstrument(guitarVoicings, guitarPanel == null ? null : guitarPanel.getScalePositions());
+            fretboard.revalidate();
+            if (actualScale != null) {
+                updateDisplayedScale();
+            }
+        }
+
+        /**
+         * Decodes the image of an instrument panel using
+         * <code>backgroundLoader</code>.
+         *
+         * @param imagePanel panel whose image is to be decoded
+         * @param fileName name of the image file for error message
+         */
+        static void loadImageInBackground(final ImagePanel imagePanel, final String fileName) {
+            backgroundLoader.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        imagePanel.loadImage();
+                        reportStartup("image '" + fileName + "' decoded");
+                    } catch (IOException ex) {
+                        SwingUtilities.invokeLater(new Runnable() {
+                            @Override
+                            public void run() {
+                                showImageError(fileName);
+                            }
+                        });
+                    }
+                }
+            });
+        }
+
+        static void showImageError(String fileName) {
+            JOptionPane.showMessageDialog(frame,
+                    "Chyba při načítání obrázku '" + fileName + "'.",
+                    "Chyba při načítání obrázku.",
+                    JOptionPane.ERROR_MESSAGE);
+        }
     }
 
     /**
@@ -467,6 +917,8 @@ public class ChordAnalyzer {
      * by {@code ROOT_WEIGHT}. Accuracy is then computed as number of matches *
      * weight of the tone / sum of assigned weights. If this number is bigger
      * than {@code REQUIRED_ACCURACY}, then the scale is added to result.
+     * Scales which are modes of each other are checked only once (see
+     * {@link ScaleClass}) and all the modes are added to result.
      *
      * @param chords an array of {@link Chord} objects for which a suitable
      * scale is to be found
@@ -474,15 +926,84 @@ public class ChordAnalyzer {
      * percentual correspondence
      */
     public static List<WeightedScale> findScales(Chord[] chords) {
-        List<Scale> scales = loadScales();
+        RootedScaleTable table = getRootedScales();
+        double[] accuracies = accuraciesBuffer.get();
+        if (accuracies == null || accuracies.length != table.size()) {
+            accuracies = new double[table.size()];
+            accuraciesBuffer.set(accuracies);
+        }
+        scoreScales(chords, table, accuracies);
+
+        //scales with accuracy bigger than a REQUIRED_ACCURACY are added to result as shared objects
         List<WeightedScale> result = new ArrayList<>();
+        for (int i = 0; i < table.size(); i++) {
+            if (accuracies[i] > REQUIRED_ACCURACY) {
+                result.add(table.get(i, accuracies[i]));
+            }
+        }
+        return result;
+    }
 
+    /**
+     * Computes accuracy of every known scale on every root for given chord
+     * progression, as described in <code>findScales</code>. Allocates no
+     * objects apart from the weights of tones.
+     *
+     * @param chords an array of {@link Chord} objects
+     * @param table interned scales, see <code>getRootedScales</code>
+     * @param accuracies array parallel to the table, filled with accuracies
+     * from 0 to 1
+     */
+    public static void scoreScales(Chord[] chords, RootedScaleTable table, double[] accuracies) {
         //weights for tones C, C# .. B
-        int[] weights = new int[12];
+        int[] weights = getWeights(chords);
 
         //sum of all asigned weights
         int sumWeights = 0;
+        for (int i : weights) {
+            sumWeights += i;
+        }
+
+        //check every scale against every one of 12 possible beginning tones, match against weighted list and assign accuracy
+        //modes of the same scale have the same tones, so only one scale from each class of modes is checked
+        List<ScaleClass> classes = table.getClasses();
+        for (int c = 0; c < classes.size(); c++) {
+            ScaleClass sc = classes.get(c);
+            //symmetric scales have the same tones on roots differing by a period, so they are checked only once per period
+            int period = sc.getPeriod();
+            for (int root = 0; root < 12; root++) {
+                double accuracy;
+                if (root < period) {
+                    int numHits = 0;
+                    int bits = Scale.rotate(sc.getBits(), root);
+                    for (int i = 0; i < 12; i++) {
+                        if ((bits & (1 << i)) != 0) {
+                            numHits += weights[i];
+                        }
+                    }
+                    accuracy = (double) numHits / sumWeights;
+                } else {
+                    accuracy = accuracies[table.indexOf(c, root % period)];
+                }
+                //all the modes have the same accuracy
+                int first = table.indexOf(c, root);
+                for (int m = 0; m < sc.size(); m++) {
+                    accuracies[first + m] = accuracy;
+                }
+            }
+        }
+    }
 
+    /**
+     * Computes weights of tones used by <code>findScales</code>. Root of each
+     * chord gets the weight {@code ROOT_WEIGHT}, other tones of the chords
+     * weight 1 and tones not present in any chord weight 0.
+     *
+     * @param chords an array of {@link Chord} objects
+     * @return weights for tones C, C# .. B
+     */
+    public static int[] getWeights(Chord[] chords) {
+        int[] weights = new int[12];
         for (Chord c : chords) {
             int numRoot = c.getRoot().ordinal();
 
@@ -496,58 +1017,238 @@ public class ChordAnalyzer {
                 }
             }
         }
-        for (int i : weights) {
-            sumWeights += i;
-        }
+        return weights;
+    }
 
-        //check every scale against every one of 12 possible beginning tones, match against weighted list and assign accuracy
-        for (Scale s : scales) {
-            for (int root = 0; root < 12; root++) {
-                int numHits = 0;
-                for (int i : s.getMask()) {
-                    numHits += weights[(root + i) % 12];
-                }
+    /**
+     * Finds the scales nearest to given chord progression, even if none of
+     * them reaches {@code REQUIRED_ACCURACY}. Scales are compared by weighted
+     * symmetric difference against the weights of tones (see
+     * {@link ScaleIndex}).
+     *
+     * @param chords an array of {@link Chord} objects
+     * @param n number of scales to be found
+     * @return a List of WeightedScale - nearest scales sorted by distance
+     */
+    public static List<WeightedScale> findNearestScales(Chord[] chords, int n) {
+        return getScaleIndex().nearest(getWeights(chords), n);
+    }
 
-                //scales with accuracy bigger than a REQUIRED_ACCURACY are added to result
-                double accuracy = (double) numHits / sumWeights;
-                if (accuracy > REQUIRED_ACCURACY) {
-                    result.add(new WeightedScale(s, Tone.values()[root], accuracy));
-                }
-            }
+    /**
+     * Returns the known scales on all roots as an interned table (see
+     * {@link RootedScaleTable}), built again only when the classes of scales
+     * change.
+     *
+     * @return table of scales on all roots
+     */
+    public static synchronized RootedScaleTable getRootedScales() {
+        List<ScaleClass> classes = getScaleClasses();
+        if (rootedScalesCache == null || rootedScalesCache.getClasses() != classes) {
+            rootedScalesCache = new RootedScaleTable(classes);
         }
-        return result;
+        return rootedScalesCache;
     }
 
     /**
-     * Loads a database of known scales from the file 'scales' in application's
-     * directory. Each scale is on a separate line as a scale name followed by
-     * the scale mask, everything separated by colons. For example:
-     * <code>melodic minor:0:2:3:5:7:9:11</code>.
+     * Returns the index of known scales for <code>findNearestScales</code>,
+     * built again only when the classes of scales change.
      *
-     * @return List of Scale objects
+     * @return index of scales
      */
-    public static List<Scale> loadScales() {
-        List<Scale> loadedScales = new ArrayList<>();
-        int[] seg;
-        String line;
-        try {
-            //charset has to be specified for Czech
-            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(new File("scales")), "UTF-8"));
-            while ((line = reader.readLine()) != null) {
-                String[] lineparts = line.split(":");
-                seg = new int[lineparts.length - 1];
-                for (int i = 1; i < lineparts.length; i++) {
-                    seg[i - 1] = Integer.parseInt(lineparts[i]);
-                }
-                loadedScales.add(new Scale(lineparts[0], seg));
-            }
-        } catch (IOException | NumberFormatException e) {
-            JOptionPane.showMessageDialog(frame,
-                    "Chyba při čtení souboru 'scales'. Ujistěte se, že soubor je v adresáři programu a ve správném formátu.",
-                    "Chyba při načítání databáze stupnic",
-                    JOptionPane.ERROR_MESSAGE);
+    private static synchronized ScaleIndex getScaleIndex() {
+        List<ScaleClass> classes = getScaleClasses();
+        if (scaleIndexCache == null || scaleIndexSource != classes) {
+            scaleIndexCache = new ScaleIndex(classes);
+            scaleIndexSource = classes;
         }
-        return loadedScales;
+        return scaleIndexCache;
+    }
+
+    /**
+     * Finds known scales on all roots by their tones, for example
+     * <code>C E G# -F 6-7</code> gives all scales with six or seven tones
+     * containing C, E and G# but not F (see {@link ScaleQuery}).
+     *
+     * @param query tones to be included, tones to be excluded preceded by
+     * "-" and a range of the number of tones
+     * @return lazily evaluated scales
+     * @throws IllegalArgumentException if the query is not understood
+     */
+    public static Iterable<WeightedScale> queryScales(CharSequence query) {
+        return getScaleQuery().query(query);
+    }
+
+    /**
+     * Returns the query engine over known scales, built again only when the
+     * classes of scales change.
+     *
+     * @return query engine
+     */
+    private static synchronized ScaleQuery getScaleQuery() {
+        List<ScaleClass> classes = getScaleClasses();
+        if (scaleQueryCache == null || scaleQuerySource != classes) {
+            scaleQueryCache = new ScaleQuery(classes);
+            scaleQuerySource = classes;
+        }
+        return scaleQueryCache;
+    }
+
+    /**
+     * Returns set-class properties (prime form, interval vector and
+     * symmetry) of known scales and chord types, see {@link SetClassIndex}.
+     * The index is built again only when scales or chords are reloaded.
+     *
+     * @return index of set-class properties
+     */
+    public static synchronized SetClassIndex getSetClassIndex() {
+        List<Scale> scales = getScales();
+        if (setClassCache == null || setClassSource != scales || setClassChords != chordBits) {
+            setClassCache = new SetClassIndex(scales, chordBits);
+            setClassSource = scales;
+            setClassChords = chordBits;
+        }
+        return setClassCache;
+    }
+
+    /**
+     * Returns the compatibility of known chords with known scales, stored in
+     * the file 'compatibility.bin' in application's directory (see
+     * {@link CompatibilityMatrix}). The file is opened again only when scales
+     * or chords are reloaded, and computed again only when they changed.
+     *
+     * @return compatibility matrix
+     */
+    public static synchronized CompatibilityMatrix getCompatibilityMatrix() {
+        List<Scale> scales = getScales();
+        if (compatibilityCache == null || compatibilitySource != scales || compatibilityChords != chordBits) {
+            compatibilityCache = CompatibilityMatrix.load(new File("compatibility.bin"), scales, chordBits);
+            compatibilitySource = scales;
+            compatibilityChords = chordBits;
+        }
+        return compatibilityCache;
+    }
+
+    /**
+     * Creates an analyzer of chord progressions in an equal division of the
+     * octave into given number of steps, with the known scales and chords
+     * mapped onto the nearest steps (see {@link EdoAnalyzer}).
+     *
+     * @param size number of steps in an octave, for example 19, 24 or 31
+     * @return analyzer of the pitch space
+     */
+    public static EdoAnalyzer createEdoAnalyzer(int size) {
+        return EdoAnalyzer.fromTwelveTone(new PitchSpace(size), getScales(), chordNames, chordBits);
+    }
+
+    /**
+     * Returns the database of known scales. The file 'scales' is parsed using
+     * <code>loadScales</code> only when it was modified since the last call,
+     * otherwise the previously loaded list is returned. Details of scales
+     * prepared for the previous list are dropped.
+     *
+     * @return List of Scale objects
+     */
+    private static synchronized List<Scale> getScales() {
+        long modified = new File("scales").lastModified();
+        if (scalesCache == null || modified != scalesModified) {
+            scalesCache = loadScales();
+            scalesModified = modified;
+            detailsPrefetcher.clear();
+        }
+        return scalesCache;
+    }
+
+    /**
+     * Returns the database of known scales divided into classes of modes (see
+     * {@link ScaleClass}). The classes are computed again only when the list
+     * of scales is reloaded.
+     *
+     * @return List of ScaleClass objects
+     */
+    public static synchronized List<ScaleClass> getScaleClasses() {
+        List<Scale> scales = getScales();
+        if (scaleClassesCache == null || scaleClassesSource != scales) {
+            scaleClassesCache = ScaleClass.group(scales);
+            scaleClassesSource = scales;
+        }
+        return scaleClassesCache;
+    }
+
+    /**
+     * Merges scales consisting of the same tones, i.e. modes of the same
+     * scale beginning at different roots, into one row. The first scale of
+     * each group is kept and the others are returned as its related modes.
+     *
+     * @param wscales list of scales sorted by accuracy
+     * @return map from the first scale of each group to the other scales of
+     * the group, in the order of the input list
+     */
+    public static Map<WeightedScale, List<WeightedScale>> groupModes(List<WeightedScale> wscales) {
+        Map<Integer, WeightedScale> first = new HashMap<>();
+        Map<WeightedScale, List<WeightedScale>> result = new LinkedHashMap<>();
+        for (WeightedScale w : wscales) {
+            int tones = Scale.rotate(w.getBits(), w.getRoot().ordinal());
+            WeightedScale head = first.get(tones);
+            if (head == null) {
+                first.put(tones, w);
+                result.put(w, new ArrayList<WeightedScale>());
+            } else {
+                result.get(head).add(w);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Loads a database of known scales from the file 'scales' in application's
+     * directory. Each scale is on a separate line as a scale name followed by
+     * the scale mask, everything separated by colons. For example:
+     * <code>melodic minor:0:2:3:5:7:9:11</code>.
+     * <br/>
+     * If the compiled catalog 'scales.bin' is newer than the text file, it is
+     * used instead, otherwise it is created from the text file (see
+     * {@link CatalogFile}). Scales of the compiled catalog are decoded only
+     * when they are accessed.
+     *
+     * @return List of Scale objects
+     */
+    public static List<Scale> loadScales() {
+        List<Scale> loadedScales = new ArrayList<>();
+        File text = new File("scales");
+        File binary = new File("scales.bin");
+        if (CatalogFile.isUpToDate(text, binary)) {
+            try {
+                return CatalogFile.open(binary).asScales();
+            } catch (IOException e) {
+                //corrupted compiled catalog, the text file is used instead
+            }
+        }
+        int[] seg;
+        String line;
+        //charset has to be specified for Czech
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(text), "UTF-8"))) {
+            while ((line = reader.readLine()) != null) {
+                String[] lineparts = stripBom(line).split(":");
+                seg = new int[lineparts.length - 1];
+                for (int i = 1; i < lineparts.length; i++) {
+                    seg[i - 1] = Integer.parseInt(lineparts[i]);
+                }
+                loadedScales.add(new Scale(lineparts[0], seg));
+            }
+            String[] names = new String[loadedScales.size()];
+            int[][] masks = new int[loadedScales.size()][];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = loadedScales.get(i).toString();
+                masks[i] = loadedScales.get(i).getMask();
+            }
+            compileCatalog(names, masks, binary);
+        } catch (IOException | NumberFormatException e) {
+            JOptionPane.showMessageDialog(frame,
+                    "Chyba při čtení souboru 'scales'. Ujistěte se, že soubor je v adresáři programu a ve správném formátu.",
+                    "Chyba při načítání databáze stupnic",
+                    JOptionPane.ERROR_MESSAGE);
+        }
+        return loadedScales;
     }
 
     /**
@@ -555,21 +1256,40 @@ public class ChordAnalyzer {
      * directory. Each chord is on a separate line as a chord name followed by
      * the chord mask, everything separated by colons. For example:
      * {@code dur:0:4:7}.
+     * <br/>
+     * As with scales, the compiled catalog 'chords.bin' is used when it is
+     * newer than the text file.
      */
     public static void loadChords() {
+        File text = new File("chords");
+        File binary = new File("chords.bin");
+        if (CatalogFile.isUpToDate(text, binary)) {
+            try {
+                CatalogFile catalog = CatalogFile.open(binary);
+                for (int i = 0; i < catalog.size(); i++) {
+                    knownChords.put(catalog.getName(i), catalog.getMask(i));
+                }
+                internChords();
+                return;
+            } catch (IOException e) {
+                //corrupted compiled catalog, the text file is used instead
+                knownChords.clear();
+            }
+        }
         int[] seg;
         String line;
-        try {
-            //charset has to be specified for Czech
-            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(new File("chords")), "UTF-8"));
+        //charset has to be specified for Czech
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(text), "UTF-8"))) {
             while ((line = reader.readLine()) != null) {
-                String[] lineparts = line.split(":");
+                String[] lineparts = stripBom(line).split(":");
                 seg = new int[lineparts.length - 1];
                 for (int i = 1; i < lineparts.length; i++) {
                     seg[i - 1] = Integer.parseInt(lineparts[i]);
                 }
                 knownChords.put(lineparts[0], seg);
             }
+            compileCatalog(knownChords.keySet().toArray(new String[0]),
+                    knownChords.values().toArray(new int[0][]), binary);
         } catch (IOException | NumberFormatException e) {
             JOptionPane.showMessageDialog(frame,
                     "Chyba při čtení souboru 'chords'. Ujistěte se, že soubor je v adresáři programu a ve správném formátu.",
@@ -578,7 +1298,113 @@ public class ChordAnalyzer {
             System.err.println("Error while loading 'chords' file.");
             System.exit(1);
         }
+        internChords();
+    }
+
+    /**
+     * Removes the byte order mark, which some editors put at the beginning of
+     * UTF-8 files and which would otherwise become part of the first name.
+     *
+     * @param line line of a text catalog
+     * @return the line without the byte order mark
+     */
+    private static String stripBom(String line) {
+        return line.startsWith("\uFEFF") ? line.substring(1) : line;
+    }
+
+    /**
+     * Writes a compiled catalog next to the text file it was loaded from. The
+     * compiled catalog only speeds up later starts, so a failure (e.g. in a
+     * read-only directory) is reported to the error output and ignored.
+     *
+     * @param names names of the entries
+     * @param masks tonal masks of the entries
+     * @param binary file to be written
+     */
+    private static void compileCatalog(String[] names, int[][] masks, File binary) {
+        try {
+            CatalogFile.compile(names, masks, binary);
+        } catch (IOException e) {
+            System.err.println("Cannot write compiled catalog '" + binary + "'.");
+        }
+    }
+
+    /**
+     * Creates a {@link Chord} object for every known chord type and every root
+     * tone, so that analysis and display of scales do not have to create new
+     * ones. Also clears the cache of <code>findSuitableChords</code> and the
+     * prepared details of scales, whose results depend on the known chords.
+     */
+    private static void internChords() {
+        chordNames = knownChords.keySet().toArray(new String[0]);
+        chordBits = new int[chordNames.length];
+        Chord[][] table = new Chord[chordNames.length][12];
+        for (int i = 0; i < chordNames.length; i++) {
+            chordBits[i] = Scale.toBits(knownChords.get(chordNames[i]));
+            for (Tone t : Tone.values()) {
+                table[i][t.ordinal()] = new Chord(t, chordNames[i]);
+            }
+        }
+        //the table is published completely filled, before the cache of results computed from it
+        chordTable = table;
+        suitableChordsCache = new AtomicReferenceArray<>(12 << 12);
+        detailsPrefetcher.clear();
+        chordParser = new ChordParser(chordNames);
+        chordRecommender = new ChordRecommender(chordBits);
+        voiceLeading = new VoiceLeading(chordNames, chordBits);
+    }
+
+    /**
+     * Gets voice-leading distances between the known chords (see
+     * {@link VoiceLeading}).
+     *
+     * @return voice leading of the known chords
+     */
+    public static VoiceLeading getVoiceLeading() {
+        return voiceLeading;
+    }
 
+    /**
+     * Gets parser of chord symbols built over the known chords.
+     *
+     * @return chord parser
+     */
+    public static ChordParser getChordParser() {
+        return chordParser;
+    }
+
+    /**
+     * Returns the shared {@link Chord} object for given root and chord type.
+     *
+     * @param root root tone of the chord
+     * @param type index of the chord type in the order of the file
+     * <code>chords</code>
+     * @return interned Chord object
+     */
+    public static Chord getChord(Tone root, int type) {
+        return chordTable[type][root.ordinal()];
+    }
+
+    /**
+     * Gets tonal mask of a chord, i.e. intervals of its tones from the root
+     * in semitones, as given in the file <code>chords</code>.
+     *
+     * @param chord chord of a known type
+     * @return tonal mask of the chord, shared and must not be modified
+     */
+    public static int[] getChordMask(Chord chord) {
+        return knownChords.get(chord.getName());
+    }
+
+    /**
+     * Gets tones of a chord as a 12-bit pitch class set, bit 0 standing for
+     * C and bit 11 for B.
+     *
+     * @param chord chord of a known type
+     * @return bit representation of the tones of the chord
+     */
+    public static int getChordBits(Chord chord) {
+        return Scale.rotate(Scale.toBits(knownChords.get(chord.getName())), chord.getRoot().ordinal());
     }
 
     /**
@@ -591,37 +1417,37 @@ public class ChordAnalyzer {
      * <code>true</code> means that the tone is in the given scale, whereas
      * <code>false</code> means the opposite. Each chord shape derived from a
      * certain root then gives certain indices in the boolean array, which has
-     * to be all true, if the chord fits the scale.
-     *
+     * to be all true, if the chord fits the scale. The test is read from the
+     * precomputed {@link CompatibilityMatrix}.
+     * <br/>
+     * The result depends only on the mask and the root of the scale, therefore
+     * it is computed once and cached. The returned arrays are shared and must
+     * not be modified.
      *
      * @param wscale scale for which the chords are to be found
      * @return two-dimensional array of {@link Chord} objects fitting the input
      * scale
      */
     public static Chord[][] findSuitableChords(WeightedScale wscale) {
-        ArrayList<Chord[]> result = new ArrayList<>();
-        boolean fits;
-
-        //boolean mask representation of a scale
-        boolean[] scaleBool = new boolean[12];
-        for (int i = 0; i < wscale.getMask().length; i++) {
-            scaleBool[wscale.getMask()[i]] = true;
+        int key = wscale.getBits() * 12 + wscale.getRoot().ordinal();
+        AtomicReferenceArray<Chord[][]> cache = suitableChordsCache;
+        Chord[][] cached = cache.get(key);
+        if (cached != null) {
+            return cached;
         }
-
+        Chord[][] table = chordTable;
+        ArrayList<Chord[]> result = new ArrayList<>();
+        CompatibilityMatrix matrix = getCompatibilityMatrix();
+        int tones = Scale.rotate(wscale.getBits(), wscale.getRoot().ordinal());
 
         for (int root : wscale.getMask()) {
             ArrayList<Chord> rootResult = new ArrayList<>();
+            int chordRoot = (wscale.getRoot().ordinal() + root) % 12;
             //for each possible root we try every possible chord shape from knownChords, previously loaded form the file 'chords'
-            for (Map.Entry<String, int[]> c : knownChords.entrySet()) {
-                fits = true;
-                for (int i : c.getValue()) {
-                    if (!scaleBool[(root + i) % 12]) {
-                        //all the tones of a chord must fit the scale
-                        fits = false;
-                    }
-                }
-                if (fits) {
-                    rootResult.add(new Chord(Tone.values()[(wscale.getRoot().ordinal() + root) % 12], c.getKey()));
+            for (int c = 0; c < matrix.getChordTypes(); c++) {
+                //all the tones of a chord must fit the scale
+                if (matrix.fits(tones, c, chordRoot)) {
+                    rootResult.add(table[c][chordRoot]);
                 }
             }
             //empty lists are not added to the result 
@@ -629,7 +1455,9 @@ public class ChordAnalyzer {
                 result.add(rootResult.toArray(new Chord[0]));
             }
         }
-        return result.toArray(new Chord[0][0]);
+        //concurrent callers may compute the same result, the first one stored is shared
+        cache.compareAndSet(key, null, result.toArray(new Chord[0][0]));
+        return cache.get(key);
     }
 
     /**
@@ -671,6 +1499,15 @@ public class ChordAnalyzer {
         //creating combo box of chord types
         String[] chordTypes = knownChords.keySet().toArray(new String[0]);
         JComboBox comboType = new JComboBox(chordTypes);
+        //recommendations, or the whole analysis in the live mode, follow every change of the chords
+        ActionListener chordChanged = new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent ae) {
+                chordsChanged();
+            }
+        };
+        comboRoot.addActionListener(chordChanged);
+        comboType.addActionListener(chordChanged);
         c = new GridBagConstraints(1, 1, 1, 1, 1.0, 0,
                 GridBagConstraints.NORTHWEST, GridBagConstraints.NONE, new Insets(5, 15, 5, 5), 0, 0);
         panel.add(comboType, c);
@@ -684,6 +1521,352 @@ public class ChordAnalyzer {
         
         //adding new chord panel to chordsInput array
         chordsInput.add(panel);
+        chordsChanged();
+    }
+
+    /**
+     * Creates an array of {@link Chord} objects from the chord input fields.
+     *
+     * @return chords entered by user
+     */
+    public static Chord[] getInputChords() {
+        Chord[] chords = new Chord[chordsInput.size()];
+        int i = 0;
+        for (JPanel panel : chordsInput) {
+            chords[i++] = getChord(
+                    Tone.fromSemitones(((JComboBox) panel.getComponent(1)).getSelectedIndex()),
+                    ((JComboBox) panel.getComponent(2)).getSelectedIndex());
+        }
+        return chords;
+    }
+
+    /**
+     * Called after every change of the chord input fields. In the live mode
+     * the analysis is scheduled, otherwise only the recommended chords are
+     * updated.
+     */
+    private static void chordsChanged() {
+        if (fillingChords) {
+            return;
+        }
+        if (liveAnalysisBox != null && liveAnalysisBox.isSelected()) {
+            liveAnalysisTimer.restart();
+        } else {
+            updateRecommendations();
+        }
+    }
+
+    /**
+     * Starts the live analysis of the entered chords, when the chords have not
+     * changed for {@code LIVE_ANALYSIS_DELAY} milliseconds. The analysis is
+     * skipped if the chords are the same as in the previous one. Scales are
+     * ranked by {@link LiveScaleRanking}, so when chords are appended only
+     * they are scored, otherwise the ranking is computed again. Only if no
+     * scale is suitable, the nearest scales are searched in the background
+     * and displayed if no newer analysis was started meanwhile.
+     */
+    private static void startLiveAnalysis() {
+        final Chord[] chords = getInputChords();
+        //chords are shared objects, so the lists can be compared directly
+        List<Chord> current = Arrays.asList(chords);
+        if (current.equals(liveAnalysisChords)) {
+            return;
+        }
+        liveAnalysisChords = current;
+        final int count = ++liveAnalysisCount;
+        detailsPrefetcher.cancel();
+
+        List<ScaleClass> classes = getScaleClasses();
+        if (liveRanking == null || liveRankingClasses != classes) {
+            liveRanking = new LiveScaleRanking(classes);
+            liveRankingClasses = classes;
+            liveRankingChords = Collections.emptyList();
+        } else if (current.size() < liveRankingChords.size() || !current.subList(0, liveRankingChords.size()).equals(liveRankingChords)) {
+            liveRanking.clear();
+            liveRankingChords = Collections.emptyList();
+        }
+        for (Chord chord : current.subList(liveRankingChords.size(), current.size())) {
+            liveRanking.add(chord.getRoot(), getChordBits(chord));
+        }
+        liveRankingChords = current;
+        List<WeightedScale> ranking = liveRanking.getResult();
+        if (!ranking.isEmpty() || chords.length == 0) {
+            displayScales(ranking, chords);
+            displayRecommendations(chords, ranking);
+            return;
+        }
+        backgroundLoader.submit(new Runnable() {
+            @Override
+            public void run() {
+                final List<WeightedScale> result = findNearestScales(chords, NEAREST_SCALES);
+                SwingUtilities.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (count == liveAnalysisCount) {
+                            displayScales(result, chords);
+                            displayRecommendations(chords, result);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Creates a MIDI receiver recognizing chords played on a keyboard and
+     * ranking scales for them (see {@link MidiChordReceiver}).
+     *
+     * @param listener listener notified on the thread of the transmitter
+     * @return MIDI receiver
+     */
+    public static MidiChordReceiver createMidiReceiver(MidiChordReceiver.ChordListener listener) {
+        return new MidiChordReceiver(chordBits, getScaleClasses(), listener);
+    }
+
+    /**
+     * Connects the first MIDI input device, typically a keyboard. Recognized
+     * chords are set into the chord input fields and the scales found for
+     * them are displayed.
+     *
+     * @return <code>true</code> if a device was connected
+     * @throws MidiUnavailableException if the device cannot be opened
+     */
+    private static boolean openMidiInput() throws MidiUnavailableException {
+        for (MidiDevice.Info info : MidiSystem.getMidiDeviceInfo()) {
+            MidiDevice device = MidiSystem.getMidiDevice(info);
+            if (device.getMaxTransmitters() == 0 || device instanceof Sequencer || device instanceof Synthesizer) {
+                continue;
+            }
+            device.open();
+            device.getTransmitter().setReceiver(createMidiReceiver(new MidiChordReceiver.ChordListener() {
+                @Override
+                public void chordRecognized(final List<Chord> progression, final List<WeightedScale> ranking) {
+                    SwingUtilities.invokeLater(new Runnable() {
+                        @Override
+                        public void run() {
+                            Chord[] chords = progression.toArray(new Chord[0]);
+                            //the ranking is already computed by the receiver
+                            fillChords(progression);
+                            displayScales(ranking, chords);
+                            displayRecommendations(chords, ranking);
+                        }
+                    });
+                }
+            }));
+            midiInput = device;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Recommends chords which could follow the entered chords. Called after
+     * every change of the chord input fields, runs the analysis without
+     * displaying its result.
+     */
+    public static void updateRecommendations() {
+        if (recommendationsLabel == null) {
+            return;
+        }
+        Chord[] chords = getInputChords();
+        List<WeightedScale> result = findScales(chords);
+        Collections.sort(result, Collections.reverseOrder());
+        displayRecommendations(chords, result);
+    }
+
+    /**
+     * Displays chords recommended by {@link ChordRecommender} for the result
+     * of an analysis, each with its voice-leading distance from the last
+     * chord, and the voice-leading distances between the analyzed chords.
+     *
+     * @param chords analyzed chords
+     * @param result scales found for the chords, sorted by descending
+     * accuracy
+     */
+    private static void displayRecommendations(Chord[] chords, List<WeightedScale> result) {
+        if (recommendationsLabel == null) {
+            return;
+        }
+        Chord last = chords.length > 0 ? chords[chords.length - 1] : null;
+        StringBuilder sb = new StringBuilder();
+        for (Chord chord : chordRecommender.recommend(result, last, RECOMMENDED_CHORDS)) {
+            sb.append(chord.getRoot().toString()).append(chord.getName());
+            if (last != null) {
+                sb.append(" (").append(voiceLeading.distance(last, chord)).append(")");
+            }
+            sb.append(", ");
+        }
+        recommendationsLabel.setText("Vhodné další akordy: " + (sb.length() > 0 ? sb.substring(0, sb.length() - 2) : "-"));
+
+        //distances between consecutive chords in semitones and their sum
+        int[] distances = voiceLeading.progression(chords);
+        int total = 0;
+        sb = new StringBuilder();
+        for (int i = 0; i < distances.length; i++) {
+            total += distances[i];
+            sb.append(chords[i].getRoot().toString()).append(chords[i].getName()).append(" → ")
+                    .append(chords[i + 1].getRoot().toString()).append(chords[i + 1].getName())
+                    .append(": ").append(distances[i]).append(", ");
+        }
+        voiceLeadingLabel.setText(distances.length == 0 ? "Vedení hlasů: -"
+                : "Vedení hlasů: celkem " + total + " půltónů (" + sb.substring(0, sb.length() - 2) + ")");
+    }
+
+    /**
+     * Replaces all chord input fields by fields preset to given chords. Used
+     * for entering a whole progression as text. The change is handled by
+     * <code>chordsChanged</code> once for all the chords.
+     *
+     * @param chords chords to be set in the input fields
+     */
+    public static void setChords(List<Chord> chords) {
+        fillChords(chords);
+        chordsChanged();
+    }
+
+    /**
+     * Replaces all chord input fields by fields preset to given chords
+     * without running <code>chordsChanged</code>. Used when the result for
+     * the chords is already known and displayed by the caller.
+     *
+     * @param chords chords to be set in the input fields
+     */
+    private static void fillChords(List<Chord> chords) {
+        fillingChords = true;
+        try {
+            for (JPanel panel : chordsInput) {
+                chordsPanel.remove(panel);
+            }
+            chordsInput.clear();
+            chordCounter = 0;
+            for (Chord chord : chords) {
+                addChord();
+                JPanel panel = chordsInput.get(chordsInput.size() - 1);
+                ((JComboBox) panel.getComponent(1)).setSelectedIndex(chord.getRoot().ordinal());
+                ((JComboBox) panel.getComponent(2)).setSelectedItem(chord.getName());
+            }
+        } finally {
+            fillingChords = false;
+        }
+        chordsPanel.revalidate();
+        chordsPanel.repaint();
+    }
+
+    /**
+     * Saves the entered chords, the displayed result and the selected scale
+     * as a session to a file chosen by user (see {@link SessionArchive}).
+     * If the file already holds sessions saved with the same catalogs, the
+     * session is appended to them. Any other existing file is replaced only
+     * when user confirms it, because its content is lost.
+     */
+    private static void saveSession() {
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showSaveDialog(frame) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File file = chooser.getSelectedFile();
+        List<Scale> scales = getScales();
+        List<SessionArchive.Session> sessions = new ArrayList<>();
+        if (file.isFile()) {
+            try {
+                sessions.addAll(SessionArchive.open(file, scales, chordBits).getAll());
+            } catch (IOException ex) {
+                int answer = JOptionPane.showConfirmDialog(frame,
+                        "Do souboru '" + file.getName() + "' nelze relaci přidat: " + ex.getMessage()
+                        + "\nNahradit celý jeho obsah touto relací?",
+                        "Uložit relaci",
+                        JOptionPane.YES_NO_OPTION,
+                        JOptionPane.WARNING_MESSAGE);
+                if (answer != JOptionPane.YES_OPTION) {
+                    return;
+                }
+            }
+        }
+        sessions.add(new SessionArchive.Session(lastResultChords, lastResult, lastResult.indexOf(actualScale)));
+        try {
+            SessionArchive.write(sessions, file, scales, chordBits);
+        } catch (IOException ex) {
+            JOptionPane.showMessageDialog(frame,
+                    "Relaci nelze uložit: " + ex.getMessage(),
+                    "Chyba při ukládání relace",
+                    JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    /**
+     * Loads a session from a file chosen by user and displays it without
+     * analyzing the chords again. If the file holds more sessions, user
+     * chooses one of them.
+     */
+    private static void loadSession() {
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showOpenDialog(frame) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        SessionArchive archive;
+        try {
+            archive = SessionArchive.open(chooser.getSelectedFile(), getScales(), chordBits);
+        } catch (IOException ex) {
+            JOptionPane.showMessageDialog(frame,
+                    "Relaci nelze načíst: " + ex.getMessage(),
+                    "Chyba při načítání relace",
+                    JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        if (archive.size() == 0) {
+            return;
+        }
+        int index = 0;
+        if (archive.size() > 1) {
+            //sessions are offered by their chords, only the chosen one is decoded whole
+            String[] sessions = new String[archive.size()];
+            for (int i = 0; i < sessions.length; i++) {
+                StringBuilder sb = new StringBuilder();
+                sb.append(i + 1).append(": ");
+                for (Chord chord : archive.getChords(i)) {
+                    sb.append(chord.getRoot().toString()).append(chord.getName()).append(", ");
+                }
+                sessions[i] = sb.substring(0, sb.length() - 2);
+            }
+            Object chosen = JOptionPane.showInputDialog(frame, "Relace:", "Načíst relaci",
+                    JOptionPane.QUESTION_MESSAGE, null, sessions, sessions[sessions.length - 1]);
+            if (chosen == null) {
+                return;
+            }
+            index = Arrays.asList(sessions).indexOf(chosen);
+        }
+        SessionArchive.Session session = archive.get(index);
+
+        detailsPrefetcher.cancel();
+        //a running live analysis of the previous chords will not be displayed
+        liveAnalysisTimer.stop();
+        liveAnalysisCount++;
+        liveAnalysisChords = Arrays.asList(session.getChords());
+        fillChords(liveAnalysisChords);
+        displayScales(session.getResults(), session.getChords());
+        displayRecommendations(session.getChords(), session.getResults());
+        if (session.getSelected() >= 0 && session.getSelected() < session.getResults().size()) {
+            WeightedScale selected = session.getResults().get(session.getSelected());
+            for (int row = 0; row < scalesTable.getRowCount(); row++) {
+                if (scalesTable.getValueAt(row, 0) == selected) {
+                    scalesTable.setRowSelectionInterval(row, row);
+                    scalesTable.scrollRectToVisible(scalesTable.getCellRect(row, 0, true));
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Displays the result of an analysis, see
+     * <code>displayScales(List)</code>.
+     *
+     * @param wscales scales to be displayed
+     * @param chords chords the scales were found for
+     */
+    public static void displayScales(List<WeightedScale> wscales, Chord[] chords) {
+        lastResultChords = chords;
+        displayScales(wscales);
     }
 
     /**
@@ -697,18 +1880,42 @@ public class ChordAnalyzer {
      * of a scale in a text format. This new model then replaces the old one in
      * <code>JTable</code> object
      * <code>scalesTable</code>.
+     * <br/>
+     * If grouping of modes is switched on, scales with the same tones are
+     * displayed in one row (see <code>groupModes</code>) and the third column
+     * lists the other modes. Scales found by a query of tones were not rated
+     * against any chords, so their accuracy is left empty.
      *
      * @param wscales current list of scales to be displayed
      */
     public static void displayScales(final List<WeightedScale> wscales) {
-        Object[][] scaleData = new Object[wscales.size()][2];
+        lastResult = wscales;
+        Object[][] scaleData;
+        final String[] columnNames;
+        boolean rated = lastResultChords.length > 0;
 
         int i = 0;
-        for (WeightedScale w : wscales) {
-            scaleData[i][0] = w;
-            scaleData[i++][1] = Integer.toString(w.getAccuracy()) + " %";
+        if (groupModesBox != null && groupModesBox.isSelected()) {
+            Map<WeightedScale, List<WeightedScale>> groups = groupModes(wscales);
+            scaleData = new Object[groups.size()][3];
+            for (Map.Entry<WeightedScale, List<WeightedScale>> group : groups.entrySet()) {
+                StringBuilder sbModes = new StringBuilder();
+                for (WeightedScale w : group.getValue()) {
+                    sbModes.append(w.toString()).append(", ");
+                }
+                scaleData[i][0] = group.getKey();
+                scaleData[i][1] = rated ? Integer.toString(group.getKey().getAccuracy()) + " %" : "";
+                scaleData[i++][2] = sbModes.length() > 0 ? sbModes.substring(0, sbModes.length() - 2) : ""; //removing the last comma
+            }
+            columnNames = new String[]{"Tónina", "Procentuální shoda", "Módy se stejnými tóny"};
+        } else {
+            scaleData = new Object[wscales.size()][2];
+            for (WeightedScale w : wscales) {
+                scaleData[i][0] = w;
+                scaleData[i++][1] = rated ? Integer.toString(w.getAccuracy()) + " %" : "";
+            }
+            columnNames = new String[]{"Tónina", "Procentuální shoda"};
         }
-        final String[] columnNames = new String[]{"Tónina", "Procentuální shoda"};
 
         DefaultTableModel model = new DefaultTableModel(scaleData, columnNames) {
             @Override
@@ -717,8 +1924,30 @@ public class ChordAnalyzer {
             }
         };
         scalesTable.setModel(model);
-        scalesTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
-        scalesTable.getSelectionModel().addListSelectionListener(new ScaleSelectedListener());
+        prefetchVisibleDetails();
+    }
+
+    /**
+     * Starts preparing details of the scales in the rows visible in
+     * <code>scalesTable</code> and the adjacent rows, see
+     * {@link DetailsPrefetcher}. Called when results are displayed and when
+     * the table is scrolled.
+     */
+    private static void prefetchVisibleDetails() {
+        int rows = scalesTable.getRowCount();
+        if (rows == 0) {
+            return;
+        }
+        Rectangle visible = scalesTable.getVisibleRect();
+        int first = scalesTable.rowAtPoint(visible.getLocation());
+        int last = scalesTable.rowAtPoint(new Point(visible.x, visible.y + visible.height - 1));
+        first = Math.max(0, (first == -1 ? 0 : first) - PREFETCH_ADJACENT);
+        last = Math.min(rows - 1, (last == -1 ? rows - 1 : last) + PREFETCH_ADJACENT);
+        List<WeightedScale> wscales = new ArrayList<>();
+        for (int row = first; row <= last; row++) {
+            wscales.add((WeightedScale) scalesTable.getValueAt(row, 0));
+        }
+        detailsPrefetcher.prefetch(wscales);
     }
 
     /**
@@ -728,15 +1957,26 @@ public class ChordAnalyzer {
      * information about selected scale is set up using
      * <code>getPanel</code> function of holder class
      * <code>singleScaleDisplay</code>.
+     * <br/>
+     * The frame is shown before the known chords are loaded, controls for
+     * entering chords are enabled by <code>catalogsLoaded</code>.
      */
     public static void createAndShowGUI() {
+        if (backgroundLoader == null) {
+            backgroundLoader = createBackgroundLoader();
+        }
         frame = new JFrame("Analyzér akordů");
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        frame.setContentPane(new JPanel() {
+            @Override
+            protected void paintComponent(java.awt.Graphics g) {
+                super.paintComponent(g);
+                reportStartup("first paint");
+            }
+        });
 
-        //set up chords panel
+        //set up chords panel, fields for entering chords are added when the known chords are loaded
         chordsPanel = new JPanel(new GridBagLayout());
-        //fields for entering one chord are prepared, more can be added by user
-        addChord();
         JScrollPane chordsScroll = new JScrollPane(chordsPanel);
         chordsScroll.setMinimumSize(new Dimension(210, 250));
         chordsScroll.setPreferredSize(new Dimension(210, 250));
@@ -755,10 +1995,142 @@ public class ChordAnalyzer {
         JButton analyzeButton = new JButton("Analyzovat");
         analyzeButton.addActionListener(new analyzeActionListener());
 
+        recommendationsLabel = new JLabel("Vhodné další akordy: -");
+        recommendationsLabel.setToolTipText("V závorce je vzdálenost od posledního akordu v půltónech při nejplynulejším vedení hlasů");
+        voiceLeadingLabel = new JLabel("Vedení hlasů: -");
+
+        //check box for merging modes with the same tones into one row
+        groupModesBox = new JCheckBox("Seskupit módy");
+        groupModesBox.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent ae) {
+                displayScales(lastResult);
+            }
+        });
+
+        //check box for analyzing the chords after every change, a burst of changes is analyzed only once
+        liveAnalysisTimer = new Timer(LIVE_ANALYSIS_DELAY, new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent ae) {
+                startLiveAnalysis();
+            }
+        });
+        liveAnalysisTimer.setRepeats(false);
+        liveAnalysisBox = new JCheckBox("Analyzovat průběžně");
+        liveAnalysisBox.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent ae) {
+                liveAnalysisChords = null;
+                if (liveAnalysisBox.isSelected()) {
+                    liveAnalysisTimer.restart();
+                } else {
+                    //a running analysis will not be displayed
+                    liveAnalysisTimer.stop();
+                    liveAnalysisCount++;
+                }
+            }
+        });
+
+        //check box for playing the chords on a MIDI keyboard
+        final JCheckBox midiInputBox = new JCheckBox("Vstup z MIDI");
+        midiInputBox.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent ae) {
+                if (!midiInputBox.isSelected()) {
+                    if (midiInput != null) {
+                        midiInput.close();
+                        midiInput = null;
+                    }
+                    return;
+                }
+                try {
+                    if (!openMidiInput()) {
+                        midiInputBox.setSelected(false);
+                        JOptionPane.showMessageDialog(frame,
+                                "Nebylo nalezeno žádné vstupní zařízení MIDI.",
+                                "Chyba zařízení MIDI",
+                                JOptionPane.ERROR_MESSAGE);
+                    }
+                } catch (MidiUnavailableException ex) {
+                    midiInputBox.setSelected(false);
+                    JOptionPane.showMessageDialog(frame,
+                            "Chyba zařízení MIDI. Vstup z MIDI není možný.",
+                            "Chyba zařízení MIDI",
+                            JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        });
+
+        //text field for entering a whole progression, for example "C, Ami, Dmi7, G7"
+        final JTextField progressionField = new JTextField();
+        progressionField.setToolTipText("Akordy oddělené čárkou, např. C, Ami, Dmi7, G7");
+        progressionField.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent ae) {
+                try {
+                    setChords(chordParser.parseProgression(progressionField.getText()));
+                } catch (IllegalArgumentException ex) {
+                    JOptionPane.showMessageDialog(frame,
+                            "Neznámý akord '" + ex.getMessage() + "'.",
+                            "Chyba při čtení akordů",
+                            JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        });
+
+        //text field for searching scales by tones, for example "C E G# -F 6-7"
+        final JTextField scaleFilterField = new JTextField();
+        scaleFilterField.setToolTipText("Hledat stupnice podle tónů, např. C E G# -F 6-7 (-F: bez tónu F, 6-7: počet tónů)");
+        scaleFilterField.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent ae) {
+                try {
+                    List<WeightedScale> result = new ArrayList<>();
+                    for (WeightedScale w : queryScales(scaleFilterField.getText())) {
+                        result.add(w);
+                    }
+                    displayScales(result, new Chord[0]);
+                } catch (IllegalArgumentException ex) {
+                    JOptionPane.showMessageDialog(frame,
+                            "Neznámý tón nebo počet tónů '" + ex.getMessage() + "'.",
+                            "Chyba při hledání stupnic",
+                            JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        });
+
+        //buttons for saving and loading analysis sessions
+        JButton saveSessionButton = new JButton("Uložit relaci");
+        saveSessionButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent ae) {
+                saveSession();
+            }
+        });
+        JButton loadSessionButton = new JButton("Načíst relaci");
+        loadSessionButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent ae) {
+                loadSession();
+            }
+        });
+        JPanel sessionPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 0));
+        sessionPanel.add(saveSessionButton);
+        sessionPanel.add(loadSessionButton);
+
         //set up scales panel
         scalesTable = new JTable();
         scalesTable.setFillsViewportHeight(true);
+        //the selection model is kept when the table model changes, so the listener is added only once
+        scalesTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        scalesTable.getSelectionModel().addListSelectionListener(new ScaleSelectedListener());
         JScrollPane scalesScroll = new JScrollPane(scalesTable);
+        scalesScroll.getViewport().addChangeListener(new ChangeListener() {
+            @Override
+            public void stateChanged(ChangeEvent ce) {
+                prefetchVisibleDetails();
+            }
+        });
         scalesScroll.setBorder(BorderFactory.createLineBorder(Color.black, 1));
         scalesScroll.setPreferredSize(scalesScroll.getMinimumSize());
 
@@ -783,13 +2155,45 @@ public class ChordAnalyzer {
 
         c = new GridBagConstraints(0, 3, 1, 1, 0, 0,
                 GridBagConstraints.NORTH, GridBagConstraints.HORIZONTAL, new Insets(5, 10, 10, 10), 0, 0);
+        cont.add(progressionField, c);
+
+        c = new GridBagConstraints(0, 4, 1, 1, 0, 0,
+                GridBagConstraints.NORTH, GridBagConstraints.HORIZONTAL, new Insets(5, 10, 10, 10), 0, 0);
         cont.add(analyzeButton, c);
 
-        c = new GridBagConstraints(1, 0, 1, 4, 0, 0,
+        c = new GridBagConstraints(0, 5, 1, 1, 0, 0,
+                GridBagConstraints.NORTHWEST, GridBagConstraints.NONE, new Insets(0, 10, 0, 10), 0, 0);
+        cont.add(liveAnalysisBox, c);
+
+        c = new GridBagConstraints(0, 6, 1, 1, 0, 0,
+                GridBagConstraints.NORTHWEST, GridBagConstraints.NONE, new Insets(0, 10, 0, 10), 0, 0);
+        cont.add(midiInputBox, c);
+
+        c = new GridBagConstraints(0, 7, 1, 1, 0, 0,
+                GridBagConstraints.NORTHWEST, GridBagConstraints.NONE, new Insets(0, 10, 10, 10), 0, 0);
+        cont.add(groupModesBox, c);
+
+        c = new GridBagConstraints(0, 8, 1, 1, 0, 0,
+                GridBagConstraints.NORTH, GridBagConstraints.HORIZONTAL, new Insets(0, 10, 10, 10), 0, 0);
+        cont.add(scaleFilterField, c);
+
+        c = new GridBagConstraints(0, 9, 1, 1, 0, 0,
+                GridBagConstraints.NORTHWEST, GridBagConstraints.NONE, new Insets(0, 5, 10, 10), 0, 0);
+        cont.add(sessionPanel, c);
+
+        c = new GridBagConstraints(1, 0, 1, 10, 0, 0,
                 GridBagConstraints.NORTH, GridBagConstraints.BOTH, new Insets(10, 10, 10, 10), 0, 0);
         cont.add(scalesScroll, c);
 
-        c = new GridBagConstraints(0, 4, 2, 1, 1.0, 1.0,
+        c = new GridBagConstraints(0, 10, 2, 1, 0, 0,
+                GridBagConstraints.WEST, GridBagConstraints.HORIZONTAL, new Insets(0, 10, 0, 10), 0, 0);
+        cont.add(recommendationsLabel, c);
+
+        c = new GridBagConstraints(0, 11, 2, 1, 0, 0,
+                GridBagConstraints.WEST, GridBagConstraints.HORIZONTAL, new Insets(0, 10, 0, 10), 0, 0);
+        cont.add(voiceLeadingLabel, c);
+
+        c = new GridBagConstraints(0, 12, 2, 1, 1.0, 1.0,
                 GridBagConstraints.NORTH, GridBagConstraints.BOTH, new Insets(10, 10, 10, 10), 0, 0);
         cont.add(singleTonality, c);
 
@@ -797,16 +2201,385 @@ public class ChordAnalyzer {
         
         //keeps window from shrinking below level given by minimalSize of all components
         frame.setMinimumSize(new Dimension(frame.getMinimumSize().width, frame.getMinimumSize().height + 40)); 
+
+        catalogControls = new JComponent[]{addChordButton, removeChordButton, analyzeButton, progressionField, scaleFilterField, liveAnalysisBox, midiInputBox, saveSessionButton, loadSessionButton};
+        for (JComponent control : catalogControls) {
+            control.setEnabled(false);
+        }
         
         frame.setVisible(true);
+        reportStartup("frame shown");
+    }
+
+    /**
+     * Called on the event dispatch thread when the known chords are loaded.
+     * Prepares fields for entering one chord (more can be added by user) and
+     * enables controls which need the known chords.
+     *
+     * @param listener called afterwards, may be <code>null</code>
+     */
+    private static void catalogsLoaded(Runnable listener) {
+        if (chordsInput.isEmpty()) {
+            addChord();
+        }
+        for (JComponent control : catalogControls) {
+            control.setEnabled(true);
+        }
+        reportStartup("catalogs loaded");
+        if (listener != null) {
+            listener.run();
+        }
     }
 
     /**
-     * Main function. Loads list of known chords from file "chords" located in
-     * the application directory, then invokes new thread for displaying GUI.
+     * Creates a pool of daemon threads for loading files in the background.
+     *
+     * @return thread pool
      */
-    public static void main(String[] args) {
+    private static ExecutorService createBackgroundLoader() {
+        return Executors.newFixedThreadPool(3, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "ChordAnalyzer loader");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Prints time elapsed since the start of the application, if startup
+     * timing is enabled. Each event is reported only once.
+     *
+     * @param event name of the event
+     */
+    private static synchronized void reportStartup(String event) {
+        if (STARTUP_TIMING && startupEvents.add(event)) {
+            System.err.println("startup: " + event + " after " + (System.nanoTime() - startTime) / 1000000 + " ms");
+        }
+    }
+
+    /**
+     * Analyzes a songbook without GUI (see {@link SongbookIngester}). The
+     * report is written to a file, or to the standard output if no file is
+     * given, and the throughput to the standard error output.
+     *
+     * @param directory directory of songs in the ChordPro format
+     * @param report report file, may be <code>null</code>
+     * @throws IOException if a song cannot be read or the report cannot be
+     * written
+     */
+    public static void ingestSongbook(File directory, File report) throws IOException {
         loadChords();
+        SongbookIngester ingester = new SongbookIngester(chordParser);
+        int threads = Runtime.getRuntime().availableProcessors();
+        Writer out = new BufferedWriter(report == null
+                ? new OutputStreamWriter(System.out, "UTF-8")
+                : new OutputStreamWriter(new FileOutputStream(report), "UTF-8"));
+        try {
+            double throughput = ingester.ingest(directory.toPath(), out, threads);
+            System.err.println(String.format("%.1f skladeb/s", throughput));
+        } finally {
+            if (report == null) {
+                out.flush();
+            } else {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * Replays a MIDI file into a {@link MidiChordReceiver} without GUI, as if
+     * it was played on a keyboard (see {@link MidiFileTransmitter}). Each
+     * recognized chord is written to the standard output as a line with the
+     * number of chords played so far, the chord and the best keys of the
+     * progression with their accuracy, separated by tabulators.
+     *
+     * @param file standard MIDI file
+     * @throws IOException if the file cannot be read or is not a MIDI file
+     */
+    public static void replayMidi(File file) throws IOException {
+        loadChords();
+        MidiFileTransmitter transmitter;
+        try {
+            transmitter = new MidiFileTransmitter(file);
+        } catch (InvalidMidiDataException ex) {
+            throw new IOException("Not a MIDI file.", ex);
+        }
+        final Writer out = new BufferedWriter(new OutputStreamWriter(System.out, "UTF-8"));
+        final IOException[] failure = new IOException[1];
+        transmitter.setReceiver(createMidiReceiver(new MidiChordReceiver.ChordListener() {
+            @Override
+            public void chordRecognized(List<Chord> progression, List<WeightedScale> ranking) {
+                Chord chord = progression.get(progression.size() - 1);
+                StringBuilder sb = new StringBuilder();
+                sb.append(progression.size()).append('\t').append(chord.getRoot().toString()).append(chord.getName());
+                for (int k = 0; k < REPORTED_KEYS && k < ranking.size(); k++) {
+                    sb.append('\t').append(ranking.get(k)).append(' ').append(ranking.get(k).getAccuracy()).append(" %");
+                }
+                try {
+                    out.write(sb.append('\n').toString());
+                } catch (IOException ex) {
+                    failure[0] = ex;
+                }
+            }
+        }));
+        try {
+            transmitter.replay(false);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException(ex);
+        } finally {
+            transmitter.close();
+            out.flush();
+        }
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+    }
+
+    /**
+     * Divides a song into segments played in one key without GUI (see
+     * {@link KeySegmenter}). Each segment is written to the standard output
+     * as soon as it is decided, on a line with the numbers of its first and
+     * last chord, the key and its accuracy, separated by tabulators.
+     *
+     * @param file song in the ChordPro format, recognized by its extension,
+     * or a text file of chord progressions separated by commas
+     * @param penalty penalty for a change of the key, see
+     * <code>KeySegmenter.DEFAULT_MODULATION_PENALTY</code>
+     * @throws IOException if the song cannot be read or contains an unknown
+     * chord
+     */
+    public static void segmentSong(File file, double penalty) throws IOException {
+        loadChords();
+        final Writer out = new BufferedWriter(new OutputStreamWriter(System.out, "UTF-8"));
+        final IOException[] failure = new IOException[1];
+        KeySegmenter.Segmentation segmentation = new KeySegmenter(getScaleClasses(), penalty).start(new KeySegmenter.SegmentListener() {
+            @Override
+            public void segment(WeightedScale key, int from, int to) {
+                try {
+                    out.write((from + 1) + "-" + to + "\t" + key + "\t" + key.getAccuracy() + " %\n");
+                    out.flush();
+                } catch (IOException ex) {
+                    failure[0] = ex;
+                }
+            }
+        });
+        boolean chordPro = false;
+        for (String extension : SongbookIngester.EXTENSIONS) {
+            chordPro |= file.getName().toLowerCase().endsWith(extension);
+        }
+        if (chordPro) {
+            for (Chord chord : new SongbookIngester(chordParser).read(file.toPath()).getChords()) {
+                segmentation.add(chord);
+            }
+        } else {
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"))) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    if (line.trim().isEmpty()) {
+                        continue;
+                    }
+                    try {
+                        for (Chord chord : chordParser.parseProgression(line)) {
+                            segmentation.add(chord);
+                        }
+                    } catch (IllegalArgumentException ex) {
+                        throw new IOException("Unknown chord: " + ex.getMessage(), ex);
+                    }
+                }
+            }
+        }
+        segmentation.finish();
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+    }
+
+    /**
+     * Analyzes a chord progression in an equal division of the octave without
+     * GUI (see {@link EdoAnalyzer}). Suitable scales are written to the
+     * standard output sorted by descending accuracy, each on a line with its
+     * accuracy and suitable chords, separated by tabulators.
+     *
+     * @param size number of steps in an octave, for example 19, 24 or 31
+     * @param progression chords separated by commas, roots outside the
+     * twelve semitones are written as steps, e.g. <code>3\31mi</code>
+     * @throws IOException if the output cannot be written
+     * @throws IllegalArgumentException if the size is not supported or a
+     * chord is not recognized
+     */
+    public static void analyzeEdo(int size, String progression) throws IOException {
+        loadChords();
+        EdoAnalyzer analyzer = createEdoAnalyzer(size);
+        int[][] chords = analyzer.parseProgression(progression, chordParser);
+        List<EdoAnalyzer.Match> result = analyzer.findScales(chords[0], chords[1]);
+        Collections.sort(result, Collections.reverseOrder());
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, "UTF-8"));
+        for (EdoAnalyzer.Match match : result) {
+            StringBuilder sb = new StringBuilder();
+            sb.append(match).append('\t').append(match.getAccuracy()).append(" %\t");
+            for (String[] row : analyzer.findSuitableChords(match)) {
+                for (String chord : row) {
+                    sb.append(chord).append(' ');
+                }
+            }
+            out.write(sb.toString().trim());
+            out.write('\n');
+        }
+        out.flush();
+    }
+
+    /**
+     * Parses a positive number given on the command line.
+     *
+     * @param arg argument
+     * @return the number
+     * @throws IOException if the argument is not a positive number
+     */
+    private static int parseCount(String arg) throws IOException {
+        try {
+            int count = Integer.parseInt(arg);
+            if (count >= 1) {
+                return count;
+            }
+        } catch (NumberFormatException ex) {
+            //reported below together with numbers out of range
+        }
+        throw new IOException("Not a positive number: " + arg);
+    }
+
+    /**
+     * Parses a penalty for a change of the key given on the command line.
+     *
+     * @param arg argument
+     * @return the penalty
+     * @throws IOException if the argument is not a non-negative number
+     */
+    private static double parsePenalty(String arg) throws IOException {
+        try {
+            double penalty = Double.parseDouble(arg);
+            if (penalty >= 0 && !Double.isInfinite(penalty)) {
+                return penalty;
+            }
+        } catch (NumberFormatException ex) {
+            //reported below together with numbers out of range
+        }
+        throw new IOException("Not a valid modulation penalty: " + arg);
+    }
+
+    /**
+     * Main function. Invokes new thread for displaying GUI and loads list of
+     * known chords from file "chords" and list of known scales from file
+     * "scales", both located in the application directory, in parallel in the
+     * background.
+     * <br/>
+     * With arguments <code>-songbook directory [report]</code> a songbook is
+     * analyzed instead, see <code>ingestSongbook</code>. With arguments
+     * <code>-batch corpus report processes</code> a corpus of progressions is
+     * analyzed in worker processes, which are started with arguments
+     * <code>-shard corpus shard processes partial</code>, see
+     * {@link ShardedBatchRunner}. With arguments <code>-midi file</code> a
+     * MIDI file is played into the recognition of chords, see
+     * <code>replayMidi</code>. With arguments <code>-export corpus
+     * directory</code> the scales found for every progression of a corpus
+     * are written to MIDI files, see <code>MidiExporter.exportCorpus</code>.
+     * With arguments <code>-edo steps progression</code> a progression is
+     * analyzed in an equal division of the octave, see
+     * <code>analyzeEdo</code>. With arguments <code>-segment file
+     * [penalty]</code> a song is divided into segments in one key, see
+     * <code>segmentSong</code>.
+     */
+    public static void main(String[] args) {
+        if (args.length == 4 && args[0].equals("-batch")) {
+            try {
+                int shards = parseCount(args[3]);
+                //catalogs and the compatibility matrix are compiled once here, the workers only open them
+                loadChords();
+                getCompatibilityMatrix();
+                ShardedBatchRunner.run(new File(args[1]), new File(args[2]), shards);
+            } catch (IOException ex) {
+                System.err.println("Korpus nelze zpracovat: " + ex.getMessage());
+                System.exit(1);
+            }
+            return;
+        }
+        if (args.length == 5 && args[0].equals("-shard")) {
+            try {
+                loadChords();
+                ShardedBatchRunner.runShard(new File(args[1]), Integer.parseInt(args[2]), Integer.parseInt(args[3]), new File(args[4]));
+            } catch (IOException ex) {
+                System.err.println("Část korpusu nelze zpracovat: " + ex.getMessage());
+                System.exit(1);
+            }
+            return;
+        }
+        if (args.length >= 2 && args[0].equals("-songbook")) {
+            try {
+                ingestSongbook(new File(args[1]), args.length > 2 ? new File(args[2]) : null);
+            } catch (IOException ex) {
+                System.err.println("Zpěvník nelze zpracovat: " + ex.getMessage());
+                System.exit(1);
+            }
+            return;
+        }
+        if (args.length == 3 && args[0].equals("-export")) {
+            try {
+                loadChords();
+                int files = MidiExporter.exportCorpus(new File(args[1]), new File(args[2]), Runtime.getRuntime().availableProcessors());
+                System.err.println(files + " souborů MIDI");
+            } catch (IOException ex) {
+                System.err.println("Korpus nelze exportovat: " + ex.getMessage());
+                System.exit(1);
+            }
+            return;
+        }
+        if (args.length == 3 && args[0].equals("-edo")) {
+            try {
+                analyzeEdo(parseCount(args[1]), args[2]);
+            } catch (IOException ex) {
+                System.err.println("Akordy nelze analyzovat: " + ex.getMessage());
+                System.exit(1);
+            } catch (IllegalArgumentException ex) {
+                System.err.println("Akordy nelze analyzovat: " + ex.getMessage());
+                System.exit(1);
+            }
+            return;
+        }
+        if ((args.length == 2 || args.length == 3) && args[0].equals("-segment")) {
+            try {
+                double penalty = args.length > 2 ? parsePenalty(args[2]) : KeySegmenter.DEFAULT_MODULATION_PENALTY;
+                segmentSong(new File(args[1]), penalty);
+            } catch (IOException ex) {
+                System.err.println("Píseň nelze rozdělit: " + ex.getMessage());
+                System.exit(1);
+            }
+            return;
+        }
+        if (args.length == 2 && args[0].equals("-midi")) {
+            try {
+                replayMidi(new File(args[1]));
+            } catch (IOException ex) {
+                System.err.println("Soubor MIDI nelze přehrát: " + ex.getMessage());
+                System.exit(1);
+            }
+            return;
+        }
+        start(null);
+    }
+
+    /**
+     * Starts the application. Invokes new thread for displaying GUI and
+     * loads the catalogs in parallel in the background.
+     *
+     * @param catalogsListener called on the event dispatch thread when the
+     * catalogs are loaded and the controls are enabled, may be
+     * <code>null</code>
+     */
+    static void start(final Runnable catalogsListener) {
+        startTime = System.nanoTime();
+        backgroundLoader = createBackgroundLoader();
 
         javax.swing.SwingUtilities.invokeLater(new Runnable() {
             @Override
@@ -814,5 +2587,21 @@ public class ChordAnalyzer {
                 createAndShowGUI();
             }
         });
+
+        backgroundLoader.submit(new Runnable() {
+            @Override
+            public void run() {
+                loadChords();
+                //scales and their set-class properties are cached, so the first analysis does not have to wait for them
+                getSetClassIndex();
+                getCompatibilityMatrix();
+                SwingUtilities.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        catalogsLoaded(catalogsListener);
+                    }
+                });
+            }
+        });
     }
 }
@@ -0,0 +1,233 @@
+package chordAnalyzer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parser of chord symbols written as text, such as <code>F#mi7</code>, <code>Bbmaj</code> or <code>Hdur</code>. A symbol consists of a root tone and a chord
+ * type. The root is a letter from A to H (Czech H is the same as English B) followed by any number of <code>#</code> or <code>b</code> signs, so that enharmonic
+ * spellings like <code>Db</code> and <code>C#</code> give the same {@link Tone}. The chord type is looked up in a prefix trie built over the names of known
+ * chords from the file <code>chords</code>, extended by a few common English aliases (for example an empty type means <code>dur</code> and <code>m7</code>
+ * means <code>mi7</code>).
+ * <br/>
+ * Parsing does not create any objects. The result is a single <code>int</code> packing the index of the chord type in the order of the file
+ * <code>chords</code> and the root tone, which can be decoded by <code>getType</code> and <code>getRoot</code>, or -1 if the symbol is not recognized.
+ */
+public class ChordParser {
+
+    /**
+     * Common alternative names of chord types, each pair is an alias followed by a name from the file <code>chords</code>. Aliases of names
+     * which are not known are ignored.
+     */
+    private static final String[][] ALIASES = new String[][]{
+        {"", "dur"}, {"M", "dur"}, {"m", "mi"}, {"min", "mi"}, {"-", "mi"},
+        {"m6", "mi6"}, {"m7", "mi7"}, {"maj7", "maj"}, {"M7", "maj"}, {"mmaj7", "mi maj7"},
+        {"o", "dim"}, {"dim7", "dim"}, {"+", "5+"}, {"aug", "5+"}, {"m9", "mi9"}, {"m11", "mi11"}, {"m13", "mi13"}
+    };
+
+    /**
+     * Semitones above C of natural tones A to H, indexed by the letter.
+     */
+    private static final int[] NATURALS = new int[]{9, 11, 0, 2, 4, 5, 7, 11};
+
+    /**
+     * Node of the prefix trie. Transitions are stored in two parallel arrays in the order of insertion, which is faster than a map for
+     * the small alphabets used in chord names.
+     */
+    private static class Node {
+
+        char[] keys = new char[0];
+        Node[] next = new Node[0];
+        int type = -1;
+
+        Node child(char c) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == c) {
+                    return next[i];
+                }
+            }
+            return null;
+        }
+
+        Node addChild(char c) {
+            Node n = child(c);
+            if (n == null) {
+                n = new Node();
+                char[] k = new char[keys.length + 1];
+                Node[] x = new Node[next.length + 1];
+                System.arraycopy(keys, 0, k, 0, keys.length);
+                System.arraycopy(next, 0, x, 0, next.length);
+                k[keys.length] = c;
+                x[next.length] = n;
+                keys = k;
+                next = x;
+            }
+            return n;
+        }
+    }
+
+    private final Node trie = new Node();
+
+    /**
+     * Constructor. Builds the trie over given chord names and the aliases of those names.
+     *
+     * @param chordNames names of known chord types, in the order of the file <code>chords</code>
+     */
+    public ChordParser(String[] chordNames) {
+        for (int i = 0; i < chordNames.length; i++) {
+            insert(chordNames[i], i);
+        }
+        for (String[] alias : ALIASES) {
+            for (int i = 0; i < chordNames.length; i++) {
+                if (chordNames[i].equals(alias[1])) {
+                    //names from the file take precedence over aliases
+                    Node n = find(alias[0], 0, alias[0].length());
+                    if (n == null || n.type == -1) {
+                        insert(alias[0], i);
+                    }
+                    break;
+                }
+            }
+        }
+    }
+
+    private void insert(String name, int type) {
+        Node n = trie;
+        for (int i = 0; i < name.length(); i++) {
+            n = n.addChild(name.charAt(i));
+        }
+        n.type = type;
+    }
+
+    private Node find(CharSequence s, int start, int end) {
+        Node n = trie;
+        for (int i = start; i < end && n != null; i++) {
+            n = n.child(s.charAt(i));
+        }
+        return n;
+    }
+
+    /**
+     * Parses a chord symbol from a part of a character sequence. Leading and trailing whitespace is skipped.
+     *
+     * @param s sequence containing the symbol
+     * @param start index of the first character of the symbol
+     * @param end index after the last character of the symbol
+     * @return packed chord type and root, or -1 if the text is not a known chord
+     */
+    public int parse(CharSequence s, int start, int end) {
+        while (start < end && Character.isWhitespace(s.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(s.charAt(end - 1))) {
+            end--;
+        }
+        if (start >= end) {
+            return -1;
+        }
+        char letter = Character.toUpperCase(s.charAt(start++));
+        if (letter < 'A' || letter > 'H') {
+            return -1;
+        }
+        int root = NATURALS[letter - 'A'];
+        //accidentals, "b" is never a beginning of a chord name, so there is no ambiguity
+        while (start < end) {
+            char c = s.charAt(start);
+            if (c == '#' || c == '♯') {
+                root++;
+            } else if (c == 'b' || c == '♭') {
+                root--;
+            } else {
+                break;
+            }
+            start++;
+        }
+        Node n = find(s, start, end);
+        if (n == null || n.type == -1) {
+            return -1;
+        }
+        return n.type * 12 + ((root % 12) + 12) % 12;
+    }
+
+    /**
+     * Parses a single tone, a letter from A to H followed by any number of <code>#</code> or <code>b</code> signs.
+     *
+     * @param s name of the tone
+     * @return number of semitones above C, or -1 if the text is not a tone
+     */
+    public static int parseTone(CharSequence s) {
+        String t = s.toString().trim();
+        if (t.isEmpty()) {
+            return -1;
+        }
+        char letter = Character.toUpperCase(t.charAt(0));
+        if (letter < 'A' || letter > 'H') {
+            return -1;
+        }
+        int tone = NATURALS[letter - 'A'];
+        for (int i = 1; i < t.length(); i++) {
+            char c = t.charAt(i);
+            if (c == '#' || c == '♯') {
+                tone++;
+            } else if (c == 'b' || c == '♭') {
+                tone--;
+            } else {
+                return -1;
+            }
+        }
+        return ((tone % 12) + 12) % 12;
+    }
+
+    /**
+     * Parses a whole character sequence as a single chord symbol.
+     *
+     * @param s chord symbol
+     * @return packed chord type and root, or -1 if the text is not a known chord
+     */
+    public int parse(CharSequence s) {
+        return parse(s, 0, s.length());
+    }
+
+    /**
+     * Parses a progression of chord symbols separated by commas, for example <code>C, Ami, Dmi7, G7</code>.
+     *
+     * @param s chord progression
+     * @return list of shared {@link Chord} objects, see <code>ChordAnalyzer.getChord</code>
+     * @throws IllegalArgumentException if some of the symbols is not recognized
+     */
+    public List<Chord> parseProgression(CharSequence s) {
+        List<Chord> result = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i <= s.length(); i++) {
+            if (i == s.length() || s.charAt(i) == ',') {
+                int parsed = parse(s, start, i);
+                if (parsed == -1) {
+                    throw new IllegalArgumentException(s.subSequence(start, i).toString().trim());
+                }
+                result.add(ChordAnalyzer.getChord(getRoot(parsed), getType(parsed)));
+                start = i + 1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Decodes the chord type from a result of <code>parse</code>.
+     *
+     * @param parsed packed chord type and root
+     * @return index of the chord type in the order of the file <code>chords</code>
+     */
+    public static int getType(int parsed) {
+        return parsed / 12;
+    }
+
+    /**
+     * Decodes the root tone from a result of <code>parse</code>.
+     *
+     * @param parsed packed chord type and root
+     * @return root tone of the chord
+     */
+    public static Tone getRoot(int parsed) {
+        return Tone.fromSemitones(parsed % 12);
+    }
+}
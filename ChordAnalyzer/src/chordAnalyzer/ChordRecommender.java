@@ -0,0 +1,102 @@
+package chordAnalyzer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Recommends chords which could follow the entered progression. Every known chord type on every root is scored against the best scales found by
+ * <code>findScales</code>: a chord gets the accuracy of each of these scales which contains all its tones. Chords fitting the most probable scales
+ * are therefore recommended first, ties are resolved by the order of the file <code>chords</code>, so simple chords come before complicated ones.
+ * <br/>
+ * Which chords fit a scale depends only on the tones of the scale, so this is read from the {@link CompatibilityMatrix} once for every set of
+ * tones and remembered. A new recommendation after an edit of the progression then only sums the remembered results of a few scales.
+ */
+public class ChordRecommender {
+
+    /**
+     * Number of best scales the chords are scored against.
+     */
+    public static final int TOP_SCALES = 10;
+
+    private final int[] chordBits;
+    //for each set of tones of a scale, the indices (type * 12 + root) of all chords it contains
+    private final Map<Integer, int[]> fitting = new HashMap<>();
+
+    /**
+     * Constructor.
+     *
+     * @param chordBits tonal masks of known chord types as 12-bit pitch class sets, in the order of the file <code>chords</code>
+     */
+    public ChordRecommender(int[] chordBits) {
+        this.chordBits = chordBits.clone();
+    }
+
+    /**
+     * Finds the chords contained in a set of tones.
+     *
+     * @param tones 12-bit pitch class set
+     * @return indices of the chords, type * 12 + root
+     */
+    private synchronized int[] getFitting(int tones) {
+        int[] result = fitting.get(tones);
+        if (result == null) {
+            result = ChordAnalyzer.getCompatibilityMatrix().getFitting(tones);
+            fitting.put(tones, result);
+        }
+        return result;
+    }
+
+    /**
+     * Recommends chords for a progression.
+     *
+     * @param ranked scales found for the progression, sorted by descending accuracy
+     * @param exclude chord which should not be recommended, usually the last chord of the progression, may be <code>null</code>
+     * @param n maximal number of recommended chords
+     * @return recommended chords from the best, shared {@link Chord} objects (see <code>ChordAnalyzer.getChord</code>)
+     */
+    public List<Chord> recommend(List<WeightedScale> ranked, Chord exclude, int n) {
+        double[] score = new double[chordBits.length * 12];
+        //modes with the same tones are counted only once
+        Set<Integer> used = new HashSet<>();
+        for (WeightedScale w : ranked) {
+            if (used.size() >= TOP_SCALES) {
+                break;
+            }
+            int tones = Scale.rotate(w.getBits(), w.getRoot().ordinal());
+            if (used.add(tones)) {
+                for (int c : getFitting(tones)) {
+                    score[c] += w.getAccuracy();
+                }
+            }
+        }
+        if (exclude != null) {
+            for (int type = 0; type < chordBits.length; type++) {
+                if (ChordAnalyzer.getChord(exclude.getRoot(), type) == exclude) {
+                    score[type * 12 + exclude.getRoot().ordinal()] = 0;
+                }
+            }
+        }
+
+        //selection of the n best chords, n is small compared to the number of chords
+        List<Chord> result = new ArrayList<>();
+        boolean[] taken = new boolean[score.length];
+        while (result.size() < n) {
+            int best = -1;
+            for (int c = 0; c < score.length; c++) {
+                if (!taken[c] && score[c] > 0 && (best == -1 || score[c] > score[best])) {
+                    best = c;
+                }
+            }
+            if (best == -1) {
+                break;
+            }
+            taken[best] = true;
+            result.add(ChordAnalyzer.getChord(Tone.fromSemitones(best % 12), best / 12));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,241 @@
+package chordAnalyzer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Precomputed compatibility of all known chords on all roots with all known scales on all roots. Whether a chord fits a scale depends only on
+ * the two catalogs, so the whole matrix is computed once by bit operations and stored in a binary file, which is opened using
+ * <code>FileChannel.map</code> on later starts, as {@link CatalogFile}. The file is identified by a hash of the tonal masks of both catalogs;
+ * when the catalogs change, the hash does not match and the matrix is computed and written again.
+ * <br/>
+ * Modes of a scale and symmetric scales share the same tones, so the rows of the matrix are the distinct pitch class sets of the scales on all
+ * roots, and the columns are the chords indexed by type * 12 + root. The file consists of:
+ * <ol>
+ * <li>header: magic number <code>CHCM</code>, format version (int), hash of the catalogs (long), number of chord types (int), number of rows
+ * (int), number of longs in a row (int), unused (int)</li>
+ * <li>index of rows: row of each of the 4096 pitch class sets (short), -1 if no scale consists of the tones</li>
+ * <li>rows: bit sets of the fitting chords (long)</li>
+ * </ol>
+ */
+public class CompatibilityMatrix {
+
+    private static final int MAGIC = 0x4348434D;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int INDEX_SIZE = 2 << 12;
+
+    private final ByteBuffer buffer;
+    private final int[] chordBits;
+    private final int words;
+
+    private CompatibilityMatrix(ByteBuffer buffer, int[] chordBits) {
+        this.buffer = buffer;
+        this.chordBits = chordBits;
+        this.words = buffer.getInt(24);
+    }
+
+    /**
+     * Opens the matrix stored in a file, or computes it and writes the file when the file does not exist or was computed from other catalogs.
+     * A failure to write the file (e.g. in a read-only directory) is reported to the error output and the computed matrix is used from memory.
+     *
+     * @param binary matrix file
+     * @param scales known scales
+     * @param chordBits tonal masks of known chord types as 12-bit pitch class sets, in the order of the file <code>chords</code>
+     * @return compatibility matrix
+     */
+    public static CompatibilityMatrix load(File binary, List<Scale> scales, int[] chordBits) {
+        long hash = hash(scales, chordBits);
+        if (binary.isFile()) {
+            try (FileChannel channel = FileChannel.open(binary.toPath(), StandardOpenOption.READ)) {
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (isValid(mapped, hash, chordBits.length)) {
+                    return new CompatibilityMatrix(mapped, chordBits.clone());
+                }
+            } catch (IOException e) {
+                //unreadable file, the matrix is computed again
+            }
+        }
+        ByteBuffer computed = compute(scales, chordBits, hash);
+        try {
+            write(computed, binary);
+        } catch (IOException e) {
+            System.err.println("Cannot write compatibility matrix '" + binary + "'.");
+        }
+        return new CompatibilityMatrix(computed, chordBits.clone());
+    }
+
+    /**
+     * Computes a 64-bit FNV-1a hash of the tonal masks of the catalogs in their order. Names do not influence the matrix. Also identifies the
+     * catalogs which the indices in a {@link SessionArchive} refer to.
+     *
+     * @param scales known scales
+     * @param chordBits tonal masks of known chord types as 12-bit pitch class sets, in the order of the file <code>chords</code>
+     * @return hash of the catalogs
+     */
+    public static long hash(List<Scale> scales, int[] chordBits) {
+        long hash = 0xcbf29ce484222325L;
+        int[] values = new int[scales.size() + chordBits.length + 2];
+        int i = 0;
+        values[i++] = scales.size();
+        for (Scale s : scales) {
+            values[i++] = s.getBits();
+        }
+        values[i++] = chordBits.length;
+        for (int bits : chordBits) {
+            values[i++] = bits;
+        }
+        for (int value : values) {
+            for (int shift = 0; shift < 32; shift += 8) {
+                hash ^= (value >>> shift) & 0xFF;
+                hash *= 0x100000001b3L;
+            }
+        }
+        return hash;
+    }
+
+    private static boolean isValid(ByteBuffer buffer, long hash, int chordTypes) {
+        if (buffer.capacity() < HEADER_SIZE + INDEX_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION
+                || buffer.getLong(8) != hash || buffer.getInt(16) != chordTypes) {
+            return false;
+        }
+        int rows = buffer.getInt(20);
+        int words = buffer.getInt(24);
+        return words == (chordTypes * 12 + 63) / 64 && buffer.capacity() == HEADER_SIZE + INDEX_SIZE + rows * words * 8;
+    }
+
+    /**
+     * Computes the matrix in the format of the file.
+     */
+    private static ByteBuffer compute(List<Scale> scales, int[] chordBits, long hash) {
+        short[] index = new short[1 << 12];
+        Arrays.fill(index, (short) -1);
+        int rows = 0;
+        for (Scale s : scales) {
+            for (int root = 0; root < 12; root++) {
+                int tones = Scale.rotate(s.getBits(), root);
+                if (index[tones] == -1) {
+                    index[tones] = (short) rows++;
+                }
+            }
+        }
+        int words = (chordBits.length * 12 + 63) / 64;
+        ByteBuffer out = ByteBuffer.allocate(HEADER_SIZE + INDEX_SIZE + rows * words * 8);
+        out.putInt(MAGIC).putInt(VERSION).putLong(hash).putInt(chordBits.length).putInt(rows).putInt(words).putInt(0);
+        for (short row : index) {
+            out.putShort(row);
+        }
+        long[] row = new long[words];
+        for (int tones = 0; tones < index.length; tones++) {
+            if (index[tones] == -1) {
+                continue;
+            }
+            Arrays.fill(row, 0);
+            for (int type = 0; type < chordBits.length; type++) {
+                for (int root = 0; root < 12; root++) {
+                    //all the tones of a chord must fit the scale
+                    if ((Scale.rotate(chordBits[type], root) & ~tones) == 0) {
+                        int c = type * 12 + root;
+                        row[c >> 6] |= 1L << c;
+                    }
+                }
+            }
+            int offset = HEADER_SIZE + INDEX_SIZE + index[tones] * words * 8;
+            for (int w = 0; w < words; w++) {
+                out.putLong(offset + w * 8, row[w]);
+            }
+        }
+        out.clear();
+        return out;
+    }
+
+    private static void write(ByteBuffer matrix, File binary) throws IOException {
+        ByteBuffer out = matrix.duplicate();
+        //written to a temporary file first, so that running instances never map a half written matrix
+        //the name is unique, because instances started at once (e.g. workers of a batch) may compile the same file
+        File tmp = File.createTempFile(binary.getName(), ".tmp", binary.getAbsoluteFile().getParentFile());
+        try {
+            try (FileChannel channel = FileChannel.open(tmp.toPath(), StandardOpenOption.WRITE)) {
+                while (out.hasRemaining()) {
+                    channel.write(out);
+                }
+            }
+            Files.move(tmp.toPath(), binary.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            tmp.delete();
+        }
+    }
+
+    /**
+     * Gets number of chord types the matrix was computed for.
+     *
+     * @return number of chord types
+     */
+    public int getChordTypes() {
+        return chordBits.length;
+    }
+
+    /**
+     * Checks whether the tones form a row of the matrix, i.e. some known scale consists of them.
+     *
+     * @param tones 12-bit pitch class set
+     * @return <code>true</code> if the compatibility of the tones is stored
+     */
+    public boolean contains(int tones) {
+        return buffer.getShort(HEADER_SIZE + tones * 2) != -1;
+    }
+
+    /**
+     * Checks whether a chord fits a set of tones. Tones of no known scale are checked directly.
+     *
+     * @param tones 12-bit pitch class set of a scale on its root
+     * @param type index of the chord type in the order of the file <code>chords</code>
+     * @param root root of the chord in semitones above C
+     * @return <code>true</code> if all the tones of the chord are among the tones
+     */
+    public boolean fits(int tones, int type, int root) {
+        int row = buffer.getShort(HEADER_SIZE + tones * 2);
+        if (row == -1) {
+            return (Scale.rotate(chordBits[type], root) & ~tones) == 0;
+        }
+        int c = type * 12 + root;
+        return (buffer.getLong(HEADER_SIZE + INDEX_SIZE + (row * words + (c >> 6)) * 8) & (1L << c)) != 0;
+    }
+
+    /**
+     * Finds all the chords fitting a set of tones.
+     *
+     * @param tones 12-bit pitch class set of a scale on its root
+     * @return ascending indices of the chords, type * 12 + root
+     */
+    public int[] getFitting(int tones) {
+        int[] found = new int[chordBits.length * 12];
+        int count = 0;
+        int row = buffer.getShort(HEADER_SIZE + tones * 2);
+        if (row == -1) {
+            for (int c = 0; c < found.length; c++) {
+                if ((Scale.rotate(chordBits[c / 12], c % 12) & ~tones) == 0) {
+                    found[count++] = c;
+                }
+            }
+        } else {
+            int offset = HEADER_SIZE + INDEX_SIZE + row * words * 8;
+            for (int w = 0; w < words; w++) {
+                long bits = buffer.getLong(offset + w * 8);
+                while (bits != 0) {
+                    found[count++] = w * 64 + Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                }
+            }
+        }
+        return Arrays.copyOf(found, count);
+    }
+}
@@ -0,0 +1,151 @@
+package chordAnalyzer;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Speculative preparation of the details of scales which are likely to be selected, typically the rows visible in the table of results and
+ * their neighbours. Details ({@link ScaleDetails} and the positions of the scale on the fretboard) are computed on a single background thread
+ * of the lowest priority into a bounded cache, so that selecting a prepared scale only sets the texts into the labels.
+ * <br/>
+ * Every call of <code>prefetch</code> or <code>cancel</code> makes the work requested before obsolete: scales not prepared yet are skipped,
+ * so the thread never works on rows which are no longer displayed. Details of a scale which is not in the cache are computed directly by
+ * <code>get</code>. Requests are made on the event dispatch thread.
+ */
+public class DetailsPrefetcher {
+
+    private final int capacity;
+    private final ExecutorService executor;
+    //details indexed by the bit mask of a scale times 12 plus its root, the least recently used are removed
+    private final Map<Integer, ScaleDetails> cache;
+    //incremented by every request, a prefetch stops when it is no longer the last one
+    private volatile int generation = 0;
+    private volatile GuitarVoicings voicings;
+    private volatile ScalePositions positions;
+    private final int shown;
+
+    /**
+     * Constructor.
+     *
+     * @param capacity maximal number of scales in the cache
+     * @param voicings guitar voicings used for the tooltips of the chords
+     * @param shown number of voicings shown for each chord
+     */
+    public DetailsPrefetcher(int capacity, GuitarVoicings voicings, int shown) {
+        this.capacity = capacity;
+        this.voicings = voicings;
+        this.shown = shown;
+        this.cache = new LinkedHashMap<Integer, ScaleDetails>(capacity, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, ScaleDetails> eldest) {
+                return size() > DetailsPrefetcher.this.capacity;
+            }
+        };
+        this.executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "ChordAnalyzer prefetch");
+                t.setDaemon(true);
+                t.setPriority(Thread.MIN_PRIORITY);
+                return t;
+            }
+        });
+    }
+
+    private static int key(WeightedScale wscale) {
+        return wscale.getBits() * 12 + wscale.getRoot().ordinal();
+    }
+
+    /**
+     * Changes the instrument the details are prepared for. The cache is cleared, because the tooltips contain guitar voicings.
+     *
+     * @param voicings guitar voicings used for the tooltips of the chords
+     * @param positions positions of scales on the fretboard, may be <code>null</code>
+     */
+    public void setInstrument(GuitarVoicings voicings, ScalePositions positions) {
+        this.voicings = voicings;
+        this.positions = positions;
+        clear();
+    }
+
+    /**
+     * Removes all the prepared details and stops preparing the scales requested so far. Called when the catalogs of scales or chords are
+     * loaded again, because the details contain set classes and suitable chords.
+     */
+    public void clear() {
+        cancel();
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * Gets details of a scale, from the cache if they were prepared, otherwise they are computed on the calling thread.
+     *
+     * @param wscale scale to be displayed
+     * @return details of the scale
+     */
+    public ScaleDetails get(WeightedScale wscale) {
+        ScaleDetails details;
+        synchronized (cache) {
+            details = cache.get(key(wscale));
+        }
+        if (details == null) {
+            details = new ScaleDetails(wscale, voicings, shown);
+            synchronized (cache) {
+                cache.put(key(wscale), details);
+            }
+        }
+        return details;
+    }
+
+    /**
+     * Prepares details of given scales in the background, in the given order. Scales requested by previous calls which are not prepared yet
+     * are skipped.
+     *
+     * @param wscales scales likely to be selected, at most the capacity of the cache is prepared
+     */
+    public void prefetch(final List<WeightedScale> wscales) {
+        final int current = ++generation;
+        final GuitarVoicings v = voicings;
+        final ScalePositions p = positions;
+        //failures are reported by the thread rather than kept in an unused future
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < wscales.size() && i < capacity; i++) {
+                    if (generation != current) {
+                        return;
+                    }
+                    WeightedScale wscale = wscales.get(i);
+                    boolean cached;
+                    synchronized (cache) {
+                        cached = cache.containsKey(key(wscale));
+                    }
+                    if (!cached) {
+                        ScaleDetails details = new ScaleDetails(wscale, v, shown);
+                        synchronized (cache) {
+                            if (generation == current) {
+                                cache.put(key(wscale), details);
+                            }
+                        }
+                    }
+                    if (p != null) {
+                        p.getPositions(wscale.getBits(), wscale.getRoot());
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Stops preparing the scales requested so far, for example when a new analysis starts. Prepared details stay in the cache.
+     */
+    public void cancel() {
+        generation++;
+    }
+}
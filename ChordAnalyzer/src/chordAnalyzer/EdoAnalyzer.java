@@ -0,0 +1,249 @@
+package chordAnalyzer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Analysis of chord progressions in a {@link PitchSpace} of any size, the counterpart of <code>ChordAnalyzer.findScales</code> and
+ * <code>ChordAnalyzer.findSuitableChords</code> for 19-, 24- or 31-EDO. Scales and chord types are stored as <code>long</code> bitsets.
+ * <br/>
+ * The weights of tones used by <code>findScales</code> are kept as two bitsets, tones of the chords and their roots, so the weighted number
+ * of hits of a scale on one root is computed by two population counts instead of a loop over the tones. Analysis of a scale on all roots
+ * therefore costs the same in 31-EDO as in 12-TET, apart from the larger number of roots.
+ */
+public class EdoAnalyzer {
+
+    /**
+     * A scale on a specific root of the pitch space together with its accuracy, the counterpart of {@link WeightedScale}.
+     */
+    public static class Match implements Comparable<Match> {
+
+        private final String name;
+        private final String rootName;
+        private final int scale;
+        private final int root;
+        private final long bits;
+        private final double accuracy;
+
+        private Match(EdoAnalyzer analyzer, int scale, int root, double accuracy) {
+            this.name = analyzer.scaleNames[scale];
+            this.rootName = analyzer.space.getName(root);
+            this.scale = scale;
+            this.root = root;
+            this.bits = analyzer.space.rotate(analyzer.scaleBits[scale], root);
+            this.accuracy = accuracy;
+        }
+
+        /**
+         * Gets index of the scale in the catalog of the analyzer.
+         *
+         * @return index of the scale
+         */
+        public int getScale() {
+            return scale;
+        }
+
+        /**
+         * Gets root step of the scale.
+         *
+         * @return root step
+         */
+        public int getRoot() {
+            return root;
+        }
+
+        /**
+         * Gets tones of the scale on its root.
+         *
+         * @return set of tones of the pitch space
+         */
+        public long getBits() {
+            return bits;
+        }
+
+        /**
+         * Gets accuracy of the scale.
+         *
+         * @return accuracy in percent
+         */
+        public int getAccuracy() {
+            return (int) (accuracy * 100);
+        }
+
+        /**
+         * Returns root of the scale and its name separated by space.
+         *
+         * @return root and name of the scale
+         */
+        @Override
+        public String toString() {
+            return rootName + " " + name;
+        }
+
+        /**
+         * Compares matches by their accuracy, in the same way as {@link WeightedScale}.
+         *
+         * @param m a match to be compared with this
+         * @return difference of accuracies of compared matches
+         */
+        @Override
+        public int compareTo(Match m) {
+            return this.getAccuracy() - m.getAccuracy();
+        }
+    }
+
+    private final PitchSpace space;
+    private final String[] scaleNames;
+    private final long[] scaleBits;
+    private final String[] chordNames;
+    private final long[] chordBits;
+
+    /**
+     * Constructor.
+     *
+     * @param space pitch space of the scales and chords
+     * @param scaleNames names of scales
+     * @param scaleBits tonal masks of the scales as bitsets of the space, see <code>PitchSpace.toBits</code>
+     * @param chordNames names of chord types
+     * @param chordBits tonal masks of the chord types as bitsets of the space
+     */
+    public EdoAnalyzer(PitchSpace space, String[] scaleNames, long[] scaleBits, String[] chordNames, long[] chordBits) {
+        this.space = space;
+        this.scaleNames = scaleNames.clone();
+        this.scaleBits = scaleBits.clone();
+        this.chordNames = chordNames.clone();
+        this.chordBits = chordBits.clone();
+    }
+
+    /**
+     * Creates an analyzer from the catalogs of scales and chords given in semitones, which are mapped onto the nearest steps of the space.
+     *
+     * @param space pitch space
+     * @param scales known scales
+     * @param chordNames names of known chord types
+     * @param chordBits tonal masks of the chord types as 12-bit pitch class sets
+     * @return analyzer of the space
+     */
+    public static EdoAnalyzer fromTwelveTone(PitchSpace space, List<Scale> scales, String[] chordNames, int[] chordBits) {
+        String[] names = new String[scales.size()];
+        long[] bits = new long[scales.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = scales.get(i).toString();
+            bits[i] = space.fromTwelveTone(scales.get(i).getBits());
+        }
+        long[] chords = new long[chordBits.length];
+        for (int i = 0; i < chords.length; i++) {
+            chords[i] = space.fromTwelveTone(chordBits[i]);
+        }
+        return new EdoAnalyzer(space, names, bits, chordNames, chords);
+    }
+
+    /**
+     * Gets the pitch space of this analyzer.
+     *
+     * @return pitch space
+     */
+    public PitchSpace getSpace() {
+        return space;
+    }
+
+    /**
+     * Parses a progression of chord symbols separated by commas. The root of a chord is either a tone (see {@link ChordParser}) mapped onto
+     * the nearest step of the space, or a step written as by <code>PitchSpace.getName</code>, for example <code>3\31mi</code> in 31-EDO.
+     *
+     * @param s chord progression
+     * @param parser parser of the known chord types, see <code>ChordAnalyzer.getChordParser</code>
+     * @return root steps of the chords and indices of their chord types, the arguments of <code>findScales</code>
+     * @throws IllegalArgumentException if some of the symbols is not recognized
+     */
+    public int[][] parseProgression(String s, ChordParser parser) {
+        String[] symbols = s.split(",");
+        int[] roots = new int[symbols.length];
+        int[] types = new int[symbols.length];
+        for (int i = 0; i < symbols.length; i++) {
+            String symbol = symbols[i].trim();
+            int parsed;
+            int slash = symbol.indexOf('\\');
+            if (!symbol.isEmpty() && Character.isDigit(symbol.charAt(0)) && slash > 0) {
+                //a step of the space, the chord type follows the size of the space
+                int end = slash + 1;
+                while (end < symbol.length() && Character.isDigit(symbol.charAt(end))) {
+                    end++;
+                }
+                int step = Integer.parseInt(symbol.substring(0, slash));
+                boolean valid = step < space.size() && symbol.substring(slash + 1, end).equals(Integer.toString(space.size()));
+                parsed = valid ? parser.parse("C" + symbol.substring(end)) : -1;
+                roots[i] = step;
+            } else {
+                parsed = parser.parse(symbol);
+                roots[i] = parsed == -1 ? 0 : space.fromSemitones(ChordParser.getRoot(parsed).ordinal());
+            }
+            if (parsed == -1) {
+                throw new IllegalArgumentException("Unknown chord: " + symbol);
+            }
+            types[i] = ChordParser.getType(parsed);
+        }
+        return new int[][]{roots, types};
+    }
+
+    /**
+     * Finds all the suitable scales for given chords, rated in the same way as in <code>ChordAnalyzer.findScales</code>: roots of the chords
+     * have the weight {@code ROOT_WEIGHT}, their other tones the weight 1, and scales with accuracy bigger than {@code REQUIRED_ACCURACY}
+     * are returned.
+     *
+     * @param roots root steps of the chords
+     * @param types indices of chord types of the chords, in the same order as <code>roots</code>
+     * @return suitable scales in the order of the catalog and roots
+     */
+    public List<Match> findScales(int[] roots, int[] types) {
+        long tones = 0;
+        long rootTones = 0;
+        for (int i = 0; i < roots.length; i++) {
+            tones |= space.rotate(chordBits[types[i]], roots[i]);
+            rootTones |= 1L << roots[i];
+        }
+        tones |= rootTones;
+        //weight of a root is ROOT_WEIGHT, i.e. 1 for being a tone of a chord and the rest for being a root
+        int extra = ChordAnalyzer.ROOT_WEIGHT - 1;
+        int sumWeights = Long.bitCount(tones) + extra * Long.bitCount(rootTones);
+
+        List<Match> result = new ArrayList<>();
+        for (int s = 0; s < scaleBits.length; s++) {
+            for (int root = 0; root < space.size(); root++) {
+                long bits = space.rotate(scaleBits[s], root);
+                int numHits = Long.bitCount(bits & tones) + extra * Long.bitCount(bits & rootTones);
+                double accuracy = (double) numHits / sumWeights;
+                if (accuracy > ChordAnalyzer.REQUIRED_ACCURACY) {
+                    result.add(new Match(this, s, root, accuracy));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Finds chords consisting only of tones of a scale, the counterpart of <code>ChordAnalyzer.findSuitableChords</code>.
+     *
+     * @param match scale on a specific root
+     * @return names of the suitable chords, one array for each tone of the scale (from its root upwards) which is a root of some
+     * suitable chord
+     */
+    public String[][] findSuitableChords(Match match) {
+        List<String[]> result = new ArrayList<>();
+        long scale = match.getBits();
+        for (long rest = scaleBits[match.getScale()]; rest != 0; rest &= rest - 1) {
+            int root = (match.getRoot() + Long.numberOfTrailingZeros(rest)) % space.size();
+            List<String> rootResult = new ArrayList<>();
+            for (int c = 0; c < chordBits.length; c++) {
+                //all the tones of a chord must fit the scale
+                if ((space.rotate(chordBits[c], root) & ~scale) == 0) {
+                    rootResult.add(space.getName(root) + chordNames[c]);
+                }
+            }
+            if (rootResult.size() > 0) {
+                result.add(rootResult.toArray(new String[0]));
+            }
+        }
+        return result.toArray(new String[0][]);
+    }
+}
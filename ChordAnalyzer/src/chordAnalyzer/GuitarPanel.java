@@ -1,102 +1,266 @@
 package chordAnalyzer;
 
+import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Font;
 import java.awt.Graphics;
-import java.awt.image.BufferedImage;
+import java.awt.Graphics2D;
 import java.io.File;
 import java.io.IOException;
-import javax.imageio.ImageIO;
-import javax.swing.JPanel;
 
 /**
- * Customized {@link JPanel} for displaying guitar fretboard with notes marked accordingly to currently selected scale. Redefines the <code>paintComponent</code> method
- * to paint a guitar fretboard from the file <code>guitar.jpg</code> on the background and graphic representation of a given scale on the front. A scale is represented
+ * Customized {@link ImagePanel} for displaying guitar fretboard with notes marked accordingly to currently selected scale. Paints a guitar fretboard from the file <code>guitar.jpg</code> on the background and graphic representation of a given scale on the front. A scale is represented
  * as a set of color circles on a fretboard with names of tones and the root tone distinguished by a different color.
- * 
- * @see JPanel
+ * <br/>
+ * The tuning and the number of frets can be changed by <code>setTuning</code>. The image shows six strings and twelve frets, for other
+ * instruments the fretboard is painted by the panel itself. Tones on all strings and frets are computed once for each tuning into a matrix,
+ * so painting a scale needs just one bit test per position on the fretboard.
+ * <br/>
+ * One of the playable positions of the scale (see {@link ScalePositions}) can be highlighted by <code>setPosition</code>.
+ *
+ * @see ImagePanel
  */
-public class GuitarPanel extends JPanel {
+public class GuitarPanel extends ImagePanel {
 
-    private BufferedImage _image;
-    private WeightedScale _scale;
+    //frets are narrowing in the direction of a bridge, this array maps number of a fret to a x-coordinate
+    private static final int[] fretMap = new int[]{20, 75, 145, 212, 280, 345, 405, 463, 517, 568, 615, 661, 705};
 
     /**
-     * Constructor. Loads image 'guitar.jpg' which is painted on the panel and
-     * sets dimensions of the panel to hold the image.
+     * Number of frets displayed on the image.
+     */
+    public static final int DEFAULT_FRETS = fretMap.length - 1;
+
+    //geometry of a painted fretboard: distance between strings, position of the nut and length of the scale in pixels
+    private static final int STRING_DISTANCE = 28;
+    private static final int NUT_X = 50;
+    private static final double SCALE_LENGTH = 1320;
+    private static final int[] INLAYS = new int[]{3, 5, 7, 9, 15, 17, 19, 21};
+
+    private static final Color TONE_COLOR = new Color(255, 255, 100, 255);
+    private static final Color ROOT_COLOR = new Color(250, 150, 50, 255);
+    private static final Color WOOD_COLOR = new Color(90, 60, 35);
+    private static final Color FRET_COLOR = new Color(200, 200, 200);
+    private static final Color POSITION_COLOR = new Color(30, 110, 230);
+    private static final BasicStroke POSITION_STROKE = new BasicStroke(3);
+    private static final Font TONE_FONT = new Font("arial", Font.BOLD, 14);
+
+    private Tuning tuning = Tuning.STANDARD;
+    private int frets = DEFAULT_FRETS;
+    //tones on the fretboard indexed by string and fret, see Tuning.getToneMatrix
+    private int[][] toneMatrix = tuning.getToneMatrix(frets);
+    //x-coordinates of the circles marking tones on each fret
+    private int[] fretX = fretMap;
+    private ScalePositions scalePositions = new ScalePositions(tuning);
+    //index of the highlighted position of the scale, -1 if none
+    private int position = -1;
+
+    /**
+     * Constructor. Sets dimensions of the panel to hold the image
+     * 'guitar.jpg', which is decoded later by <code>loadImage</code>.
      *
      * @throws IOException
      */
     public GuitarPanel() throws IOException {
-        _image = ImageIO.read(new File("guitar.jpg"));
+        super(new File("guitar.jpg"));
+    }
 
-        this.setPreferredSize(new Dimension(_image.getWidth(), _image.getHeight()));
-        this.setMinimumSize(new Dimension(_image.getWidth(), _image.getHeight()));
+    /**
+     * Gets current tuning of the guitar.
+     *
+     * @return tuning of the guitar
+     */
+    public Tuning getTuning() {
+        return tuning;
     }
 
     /**
-     * Updates the panel to display currently selected scale.
+     * Gets current number of frets.
      *
-     * @param wscale currently selected scale
+     * @return number of frets
      */
-    public void setScale(WeightedScale wscale) {
-        _scale = wscale;
+    public int getFrets() {
+        return frets;
+    }
+
+    /**
+     * Changes the instrument displayed on the panel.
+     *
+     * @param tuning tuning of the guitar
+     * @param frets number of frets
+     */
+    public void setTuning(Tuning tuning, int frets) {
+        this.tuning = tuning;
+        this.frets = frets;
+        toneMatrix = tuning.getToneMatrix(frets);
+        scalePositions = new ScalePositions(tuning);
+        Dimension size;
+        if (usesImage()) {
+            fretX = fretMap;
+            size = _imageSize;
+        } else {
+            fretX = new int[frets + 1];
+            fretX[0] = NUT_X - 35;
+            for (int i = 1; i <= frets; i++) {
+                fretX[i] = (wireX(i - 1) + wireX(i)) / 2 - 11;
+            }
+            size = new Dimension(wireX(frets) + 20, STRING_DISTANCE * tuning.size() + 5);
+        }
+        this.setPreferredSize(size);
+        this.setMinimumSize(size);
+        this.revalidate();
         this.repaint();
     }
 
     /**
-     * Paints specific tone in all his occurencies on a fretboard.
+     * Gets positions of scales on the fretboard with the current tuning, they can be computed in advance from any thread.
+     *
+     * @return positions of scales
+     */
+    public ScalePositions getScalePositions() {
+        return scalePositions;
+    }
+
+    /**
+     * Highlights one of the playable positions of the current scale.
+     *
+     * @param position index of the position from 0 to <code>getPositionCount() - 1</code>, or -1 for no highlighting
+     */
+    public void setPosition(int position) {
+        this.position = position;
+        this.repaint();
+    }
+
+    /**
+     * Gets number of playable positions of the current scale, which is equal to the number of its tones.
+     *
+     * @return number of positions, 0 if no scale is displayed
+     */
+    public int getPositionCount() {
+        return _scale == null ? 0 : Integer.bitCount(_scale.getBits());
+    }
+
+    /**
+     * Checks whether the instrument fits the image, i.e. it has six strings and twelve frets.
+     */
+    private boolean usesImage() {
+        return tuning.size() == 6 && frets == DEFAULT_FRETS;
+    }
+
+    /**
+     * Computes x-coordinate of a fret wire, using the rule that each fret shortens the string by the twelfth root of two.
+     *
+     * @param fret number of the fret, 0 for the nut
+     * @return x-coordinate of the fret wire
+     */
+    private static int wireX(int fret) {
+        return NUT_X + (int) (SCALE_LENGTH * (1 - Math.pow(2, -fret / 12.0)));
+    }
+
+    /**
+     * Paints the fretboard, either from the image or, for instruments which do not fit the image, as a simple drawing.
      *
-     * @param t tone to be painted
      * @param g Graphics object to be drawn to
+     * @return <code>false</code> if the image is needed but not decoded yet
      */
-    private void paintTone(Tone t, Graphics g) {
-        //strings in standard tuning
-        Tone[] openStrings = new Tone[]{Tone.E, Tone.B, Tone.G, Tone.D, Tone.A, Tone.E};
-        
-        //frets are narrowing in the direction of a bridge, this array maps number of a fret to a x-coordinate
-        int[] fretMap = new int[]{20, 75, 145, 212, 280, 345, 405, 463, 517, 568, 615, 661, 705};
-        
-        for (int j = 0; j < openStrings.length; j++) {
-            //painting only first octave (first twelve frets on the fretboard)
-            for (int i = 0; i < 13; i++) {
-                if (t.equals(Tone.values()[(openStrings[j].ordinal() + i) % 12])) {
-                    g.setColor(new Color(255, 255, 100, 255));
-                    if (t.equals(_scale.getRoot())) {
-                        //root is distinguished with different color
-                        g.setColor(new Color(250, 150, 50, 255));
-                    }
-                    //circle is drawn to mark a tone
-                    g.fillOval(fretMap[i], 28 * j, 23, 23);
-                    g.setColor(Color.black);
-                    g.drawOval(fretMap[i], 28 * j, 23, 23);
-                    
-                    //tone name is drawn over the circle
-                    g.setColor(Color.black);
-                    g.setFont(new Font("arial", Font.BOLD, 14));
-                    
-                    //"center align"
-                    g.drawString(t.toString(), fretMap[i] + 9 - 3 * t.toString().length(), 28 * j + 17);
+    @Override
+    protected boolean paintBackground(Graphics g) {
+        if (usesImage()) {
+            return super.paintBackground(g);
+        }
+        int height = STRING_DISTANCE * tuning.size() - 5;
+        g.setColor(WOOD_COLOR);
+        g.fillRect(NUT_X, 0, wireX(frets) - NUT_X, height);
+        g.setColor(FRET_COLOR);
+        for (int inlay : INLAYS) {
+            if (inlay <= frets) {
+                g.fillOval(fretX[inlay] + 7, height / 2 - 4, 9, 9);
+            }
+        }
+        for (int octave = 12; octave <= frets; octave += 12) {
+            g.fillOval(fretX[octave] + 7, height / 3 - 4, 9, 9);
+            g.fillOval(fretX[octave] + 7, 2 * height / 3 - 4, 9, 9);
+        }
+        for (int i = 0; i <= frets; i++) {
+            g.fillRect(wireX(i) - (i == 0 ? 3 : 1), 0, i == 0 ? 6 : 2, height);
+        }
+        g.setColor(Color.lightGray);
+        for (int j = 0; j < tuning.size(); j++) {
+            g.drawLine(0, STRING_DISTANCE * j + 11, wireX(frets), STRING_DISTANCE * j + 11);
+        }
+        return true;
+    }
+
+    /**
+     * Paints all tones of the current scale on the fretboard in one pass over the tone matrix.
+     *
+     * @param g Graphics object to be drawn to
+     */
+    @Override
+    protected void paintScale(Graphics g) {
+        paintTones(Scale.rotate(_scale.getBits(), _scale.getRoot().ordinal()), g);
+        if (position >= 0 && position < getPositionCount()) {
+            paintPosition(scalePositions.getPositions(_scale.getBits(), _scale.getRoot())[position], g);
+        }
+    }
+
+    /**
+     * Highlights tones of a position by rings around their circles. Parts of the position beyond the last fret are not painted.
+     *
+     * @param frets frets of the position indexed by string and tone
+     * @param g Graphics object to be drawn to
+     */
+    private void paintPosition(int[][] frets, Graphics g) {
+        Graphics2D g2 = (Graphics2D) g.create();
+        g2.setColor(POSITION_COLOR);
+        g2.setStroke(POSITION_STROKE);
+        for (int j = 0; j < frets.length; j++) {
+            for (int f : frets[j]) {
+                if (f <= this.frets) {
+                    g2.drawOval(fretX[f] - 2, STRING_DISTANCE * j - 2, 27, 27);
                 }
             }
         }
+        g2.dispose();
     }
 
     /**
-     * Paints component itself, guitar fretboard from image 'guitar.jpg' and
-     * marks all the tones from currently displayed scale.
+     * Paints specific tone in all his occurencies on a fretboard.
      *
-     * @param g Graphics object to be drawn to.
+     * @param t tone to be painted
+     * @param g Graphics object to be drawn to
      */
     @Override
-    protected void paintComponent(Graphics g) {
-        super.paintComponent(g);
-        g.drawImage(_image, 0, 0, null);
-        if (_scale != null) {
-            for (Tone t : _scale.getTones()) {
-                paintTone(t, g);
+    protected void paintTone(Tone t, Graphics g) {
+        paintTones(1 << t.ordinal(), g);
+    }
+
+    /**
+     * Paints tones from a pitch class set in all their occurencies on a fretboard.
+     *
+     * @param tones 12-bit pitch class set of tones to be painted
+     * @param g Graphics object to be drawn to
+     */
+    private void paintTones(int tones, Graphics g) {
+        int root = _scale.getRoot().ordinal();
+        g.setFont(TONE_FONT);
+        for (int j = 0; j < toneMatrix.length; j++) {
+            for (int i = 0; i < toneMatrix[j].length; i++) {
+                int tone = toneMatrix[j][i];
+                if ((tones & (1 << tone)) != 0) {
+                    //root is distinguished with different color
+                    g.setColor(tone == root ? ROOT_COLOR : TONE_COLOR);
+
+                    //circle is drawn to mark a tone
+                    g.fillOval(fretX[i], STRING_DISTANCE * j, 23, 23);
+                    g.setColor(Color.black);
+                    g.drawOval(fretX[i], STRING_DISTANCE * j, 23, 23);
+
+                    //tone name is drawn over the circle, "center align"
+                    String name = Tone.fromSemitones(tone).toString();
+                    g.drawString(name, fretX[i] + 9 - 3 * name.length(), STRING_DISTANCE * j + 17);
+                }
             }
         }
     }
-}
\ No newline at end of file
+}
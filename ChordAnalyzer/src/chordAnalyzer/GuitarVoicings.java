@@ -0,0 +1,244 @@
+package chordAnalyzer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds playable fingerings (voicings) of chords on a guitar fretboard. A voicing assigns every string either a fret or nothing (muted string) and
+ * it is playable if all fretted notes lie within a hand span. Voicings are searched by a depth-first search from the bass string, which prunes
+ * a partial voicing as soon as its span is too large or the remaining strings cannot supply the missing tones of the chord. Found voicings are
+ * ranked by a simple cost (missing tones, muted strings, span and position on the neck) and the best ones are remembered for each chord, so that
+ * repeated queries for the same chord are answered immediately. The partial fingerings of single strings, i.e. the frets of each string
+ * sounding a tone of the chord, depend only on the tones of the chord, so they are remembered for each chord mask and shared by all chords
+ * with the same tones (e.g. C6 and Ami7) and by all the searches of a chord. Partial voicings of several strings are not remembered: their
+ * state (string, covered tones, fret window, sounding strings) rarely repeats within a search, only about one lookup in five would be answered,
+ * and keeping the best completions of every state made the search two to three times slower than searching them again.
+ * <br/>
+ * A voicing is represented as an array of frets in the order of strings given by the tuning, with -1 for a muted string.
+ */
+public class GuitarVoicings {
+
+    /**
+     * Largest distance between the lowest and the highest fretted note, in frets.
+     */
+    public static final int HAND_SPAN = 3;
+    /**
+     * Smallest number of strings which have to sound.
+     */
+    public static final int MIN_STRINGS = 3;
+    /**
+     * Number of best voicings remembered for each chord, the largest number of voicings which can be requested.
+     */
+    public static final int MAX_VOICINGS = 16;
+
+    private final Tone[] tuning;
+    private final int frets;
+    private final int handSpan;
+    private final Map<Integer, int[][]> cache = new HashMap<>();
+    //frets of each string sounding a tone of the chord, indexed by the pitch class set of the chord
+    private final Map<Integer, int[][]> stringFrets = new HashMap<>();
+
+    /**
+     * Constructor.
+     *
+     * @param tuning tones of open strings, from the highest string to the lowest, as in <code>GuitarPanel</code>
+     * @param frets number of frets on the neck
+     * @param handSpan largest distance between the lowest and the highest fretted note
+     */
+    public GuitarVoicings(Tone[] tuning, int frets, int handSpan) {
+        this.tuning = tuning.clone();
+        this.frets = frets;
+        this.handSpan = handSpan;
+    }
+
+    /**
+     * State of the search, shared by all levels of the recursion.
+     */
+    private class Search {
+
+        final int root;
+        final int tones;
+        final int[][] candidates;
+        //tones which may be missing without making the voicing unusable, the fifth of the chord and for large chords also the ninth and the eleventh
+        final int optional;
+        final int[] current = new int[tuning.length];
+        final List<int[]> found = new ArrayList<>();
+        final List<Integer> costs = new ArrayList<>();
+        final int limit;
+
+        Search(int root, int tones, int limit) {
+            this.root = root;
+            this.tones = tones;
+            this.candidates = getStringFrets(tones);
+            int omitted = 1 << ((root + 7) % 12);
+            if (Integer.bitCount(tones & ~omitted) > 4) {
+                omitted |= (1 << ((root + 2) % 12)) | (1 << ((root + 5) % 12));
+            }
+            this.optional = tones & omitted;
+            this.limit = limit;
+        }
+
+        /**
+         * Assigns a fret to the string with given index and continues with the next higher string. Strings are processed from the last one
+         * (the bass string) to the first one.
+         */
+        void search(int string, int covered, int sounding, int minFret, int maxFret) {
+            if (Integer.bitCount(tones & ~optional & ~covered) > string + 1) {
+                //not enough strings left for the missing tones
+                return;
+            }
+            if (string < 0) {
+                if (sounding >= MIN_STRINGS) {
+                    add(covered, minFret, maxFret);
+                }
+                return;
+            }
+            //muted string
+            current[string] = -1;
+            search(string - 1, covered, sounding, minFret, maxFret);
+
+            int open = tuning[string].ordinal();
+            for (int f : candidates[string]) {
+                int tone = (open + f) % 12;
+                //the lowest sounding tone must be the root of the chord
+                if (sounding == 0 && tone != root) {
+                    continue;
+                }
+                int min = minFret;
+                int max = maxFret;
+                if (f > 0) {
+                    min = Math.min(min, f);
+                    max = Math.max(max, f);
+                    if (max - min > handSpan) {
+                        continue;
+                    }
+                }
+                current[string] = f;
+                search(string - 1, covered | (1 << tone), sounding + 1, min, max);
+            }
+            current[string] = -1;
+        }
+
+        void add(int covered, int minFret, int maxFret) {
+            int cost = 10 * Integer.bitCount(tones & ~covered);
+            boolean started = false;
+            boolean gap = false;
+            for (int i = current.length - 1; i >= 0; i--) {
+                if (current[i] >= 0) {
+                    started = true;
+                } else {
+                    cost++;
+                    //muted string between sounding strings is hard to play
+                    if (started) {
+                        gap = true;
+                    }
+                }
+            }
+            if (gap) {
+                cost += 5;
+            }
+            if (maxFret > 0) {
+                cost += (maxFret - minFret) + minFret / 2;
+            }
+            //only the best voicings are kept, sorted by cost
+            int pos = costs.size();
+            while (pos > 0 && costs.get(pos - 1) > cost) {
+                pos--;
+            }
+            if (pos < limit) {
+                found.add(pos, current.clone());
+                costs.add(pos, cost);
+                if (found.size() > limit) {
+                    found.remove(limit);
+                    costs.remove(limit);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the frets of each string which sound a tone of a chord, computed when needed for the first time.
+     *
+     * @param tones tones of the chord as a 12-bit pitch class set
+     * @return ascending frets for each string in the order of the tuning
+     */
+    private int[][] getStringFrets(int tones) {
+        int[][] result = stringFrets.get(tones);
+        if (result == null) {
+            result = new int[tuning.length][];
+            int[] buffer = new int[frets + 1];
+            for (int string = 0; string < tuning.length; string++) {
+                int count = 0;
+                for (int f = 0; f <= frets; f++) {
+                    if ((tones & (1 << ((tuning[string].ordinal() + f) % 12))) != 0) {
+                        buffer[count++] = f;
+                    }
+                }
+                result[string] = Arrays.copyOf(buffer, count);
+            }
+            stringFrets.put(tones, result);
+        }
+        return result;
+    }
+
+    /**
+     * Finds the best voicings of a chord.
+     *
+     * @param root root of the chord
+     * @param tones tones of the chord as a 12-bit pitch class set, see <code>ChordAnalyzer.getChordBits</code>
+     * @param n maximal number of voicings, at most <code>MAX_VOICINGS</code>
+     * @return at most <code>n</code> voicings from the best, the arrays are shared and must not be modified
+     */
+    public synchronized int[][] find(Tone root, int tones, int n) {
+        int key = tones * 12 + root.ordinal();
+        int[][] cached = cache.get(key);
+        if (cached == null) {
+            Search s = new Search(root.ordinal(), tones, MAX_VOICINGS);
+            s.search(tuning.length - 1, 0, 0, Integer.MAX_VALUE, 0);
+            cached = s.found.toArray(new int[0][]);
+            cache.put(key, cached);
+        }
+        if (cached.length <= n) {
+            return cached;
+        }
+        int[][] result = new int[n][];
+        System.arraycopy(cached, 0, result, 0, n);
+        return result;
+    }
+
+    /**
+     * Finds the best voicings of a chord.
+     *
+     * @param chord chord of a known type
+     * @param n maximal number of voicings, at most <code>MAX_VOICINGS</code>
+     * @return at most <code>n</code> voicings from the best
+     */
+    public int[][] find(Chord chord, int n) {
+        return find(chord.getRoot(), ChordAnalyzer.getChordBits(chord), n);
+    }
+
+    /**
+     * Formats a voicing in the usual tablature notation from the bass string to the highest one, e.g. <code>x32010</code> for C major. If
+     * some fret is higher than 9, frets are separated by dashes.
+     *
+     * @param voicing voicing in the order of strings given by the tuning
+     * @return text representation of the voicing
+     */
+    public static String format(int[] voicing) {
+        boolean wide = false;
+        for (int f : voicing) {
+            wide |= f > 9;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = voicing.length - 1; i >= 0; i--) {
+            sb.append(voicing[i] < 0 ? "x" : Integer.toString(voicing[i]));
+            if (wide && i > 0) {
+                sb.append("-");
+            }
+        }
+        return sb.toString();
+    }
+}
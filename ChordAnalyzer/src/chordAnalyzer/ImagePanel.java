@@ -0,0 +1,157 @@
+package chordAnalyzer;
+
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
+
+/**
+ * Common base of {@link GuitarPanel} and {@link PianoPanel}, a {@link JPanel} painting an instrument from an image file on the background and the
+ * currently selected scale on the front. Decoding of the image is the slowest part of the start of the application, therefore the constructor
+ * reads only the dimensions of the image from its header and the image itself is decoded later by <code>loadImage</code>, which can be called
+ * from any thread. Until then only the empty panel of the correct size is displayed.
+ */
+public abstract class ImagePanel extends JPanel {
+
+    private static final long serialVersionUID = 1L;
+
+    private final File _file;
+    /**
+     * Dimensions of the image, known before the image is decoded.
+     */
+    protected final Dimension _imageSize;
+    /**
+     * Decoded image, <code>null</code> until <code>loadImage</code> finishes.
+     */
+    protected BufferedImage _image;
+    /**
+     * Currently displayed scale, <code>null</code> if no scale is selected.
+     */
+    protected WeightedScale _scale;
+
+    /**
+     * Constructor. Reads dimensions of the image and sets dimensions of the panel to hold the image.
+     *
+     * @param file image file painted on the panel
+     * @throws IOException if the file is not a readable image
+     */
+    protected ImagePanel(File file) throws IOException {
+        _file = file;
+        _imageSize = readSize(file);
+        this.setPreferredSize(_imageSize);
+        this.setMinimumSize(_imageSize);
+    }
+
+    /**
+     * Reads dimensions of an image from its header without decoding the image.
+     *
+     * @param file image file
+     * @return dimensions of the image
+     * @throws IOException if the file is not a readable image
+     */
+    private static Dimension readSize(File file) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file)) {
+            if (in == null) {
+                throw new IOException("Cannot open " + file);
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                throw new IOException("Unknown image format " + file);
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in);
+                return new Dimension(reader.getWidth(0), reader.getHeight(0));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Decodes the image and repaints the panel. Intended to be called from a background thread, the decoded image is handed over to the
+     * event dispatch thread.
+     *
+     * @throws IOException if the image cannot be decoded
+     */
+    public void loadImage() throws IOException {
+        final BufferedImage image = ImageIO.read(_file);
+        if (image == null) {
+            throw new IOException("Cannot decode " + _file);
+        }
+        SwingUtilities.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                _image = image;
+                repaint();
+            }
+        });
+    }
+
+    /**
+     * Updates the panel to display currently selected scale.
+     *
+     * @param wscale currently selected scale
+     */
+    public void setScale(WeightedScale wscale) {
+        _scale = wscale;
+        this.repaint();
+    }
+
+    /**
+     * Paints specific tone of the current scale in all its occurencies on the instrument.
+     *
+     * @param t tone to be painted
+     * @param g Graphics object to be drawn to
+     */
+    protected abstract void paintTone(Tone t, Graphics g);
+
+    /**
+     * Paints the instrument. By default the image is painted, subclasses may paint the instrument themselves.
+     *
+     * @param g Graphics object to be drawn to
+     * @return <code>false</code> if the instrument cannot be painted yet, because the image is not decoded
+     */
+    protected boolean paintBackground(Graphics g) {
+        if (_image == null) {
+            return false;
+        }
+        g.drawImage(_image, 0, 0, null);
+        return true;
+    }
+
+    /**
+     * Marks all the tones from currently displayed scale, by default by calling <code>paintTone</code> for each of them.
+     *
+     * @param g Graphics object to be drawn to
+     */
+    protected void paintScale(Graphics g) {
+        for (Tone t : _scale.getTones()) {
+            paintTone(t, g);
+        }
+    }
+
+    /**
+     * Paints component itself, the instrument and marks all the tones from currently displayed scale. Nothing but the background is painted
+     * until the instrument can be painted.
+     *
+     * @param g Graphics object to be drawn to.
+     */
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        if (!paintBackground(g)) {
+            return;
+        }
+        if (_scale != null) {
+            paintScale(g);
+        }
+    }
+}
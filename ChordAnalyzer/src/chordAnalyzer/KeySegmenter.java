@@ -0,0 +1,266 @@
+package chordAnalyzer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Divides a long chord progression, typically a whole song, into segments played in one key. While <code>findScales</code> finds the scales
+ * fitting all the chords at once, this class finds the best sequence of keys, allowing the song to modulate.
+ * <br/>
+ * Every chord is scored against every candidate key (a class of modes, see {@link ScaleClass}, beginning at one of the twelve roots) the same
+ * way as in <code>findScales</code>, i.e. the accuracy of the key for this single chord with the root of the chord weighted by
+ * <code>ROOT_WEIGHT</code>. The score of a sequence of keys is the sum of these accuracies minus a modulation penalty for every change of the key,
+ * and the sequence with the highest score is found by the Viterbi algorithm. Since a change of the key costs the same from any key to any other,
+ * the best predecessor of a key is either the same key or the best key of the previous chord, so the computation takes time proportional to
+ * the number of chords times the number of candidate keys. The chords may be added one by one and the segments are passed on as soon as they
+ * are decided, see {@link Segmentation}.
+ */
+public class KeySegmenter {
+
+    /**
+     * Default penalty for a change of the key, equal to the score of one perfectly fitting chord.
+     */
+    public static final double DEFAULT_MODULATION_PENALTY = 1.0;
+
+    /**
+     * Receives segments found by the <code>KeySegmenter</code>, in the order of the song.
+     */
+    public interface SegmentListener {
+
+        /**
+         * Called for every segment of the song.
+         *
+         * @param key key of the segment, its accuracy is the average accuracy of the chords in the segment
+         * @param from index of the first chord of the segment
+         * @param to index after the last chord of the segment
+         */
+        void segment(WeightedScale key, int from, int to);
+    }
+
+    private final double penalty;
+    private final Scale[] keyScales;
+    private final Tone[] keyRoots;
+    private final int[] keyBits;
+
+    /**
+     * Constructor.
+     *
+     * @param classes known scales divided into classes of modes, see <code>ChordAnalyzer.getScaleClasses</code>
+     * @param modulationPenalty penalty subtracted from the score for every change of the key
+     */
+    public KeySegmenter(List<ScaleClass> classes, double modulationPenalty) {
+        this.penalty = modulationPenalty;
+        int count = classes.size() * 12;
+        keyScales = new Scale[count];
+        keyRoots = new Tone[count];
+        keyBits = new int[count];
+        int k = 0;
+        for (ScaleClass sc : classes) {
+            for (int root = 0; root < 12; root++) {
+                keyScales[k] = sc.getMember(0);
+                keyRoots[k] = Tone.fromSemitones(root);
+                keyBits[k++] = Scale.rotate(sc.getBits(), root);
+            }
+        }
+    }
+
+    /**
+     * Computes accuracy of a key for a single chord.
+     *
+     * @param root root of the chord as a one bit mask
+     * @param others other tones of the chord as a pitch class set
+     * @param key tones of the key as a pitch class set
+     * @return accuracy from 0 to 1
+     */
+    private static double emission(int root, int others, int key) {
+        int hits = ((key & root) != 0 ? ChordAnalyzer.ROOT_WEIGHT : 0) + Integer.bitCount(others & key);
+        return (double) hits / (ChordAnalyzer.ROOT_WEIGHT + Integer.bitCount(others));
+    }
+
+    /**
+     * Finds the best sequence of keys for given chords and passes its segments to the listener.
+     *
+     * @param chords chord progression
+     * @param listener receiver of the segments
+     */
+    public void segment(Chord[] chords, SegmentListener listener) {
+        Segmentation segmentation = start(listener);
+        for (Chord chord : chords) {
+            segmentation.add(chord);
+        }
+        segmentation.finish();
+    }
+
+    /**
+     * Starts segmentation of a progression whose chords are added one by one, e.g. while a song is being read or played.
+     *
+     * @param listener receiver of the segments
+     * @return segmentation accepting the chords
+     */
+    public Segmentation start(SegmentListener listener) {
+        return new Segmentation(listener);
+    }
+
+    /**
+     * Segmentation of one progression by the Viterbi algorithm, fed with one chord at a time. A segment is passed to the listener as soon as
+     * it cannot change any more, i.e. when the best paths ending in all the keys pass through the same key at some later chord, so they share
+     * everything before it. Only the chords after the last passed segment are kept, so a long song with modulations takes memory
+     * proportional to its longest undecided part rather than to its length. The segments ending the song are passed by <code>finish</code>.
+     */
+    public class Segmentation {
+
+        private final SegmentListener listener;
+        private double[] score = new double[keyBits.length];
+        private double[] next = new double[keyBits.length];
+        /**
+         * For each key, the key at the <code>checkpoint</code> chord on the best path ending in the key.
+         */
+        private int[] ancestors = new int[keyBits.length];
+        private int[] nextAncestors = new int[keyBits.length];
+        private int checkpoint;
+        /**
+         * Number of added chords.
+         */
+        private int length;
+        /**
+         * Index of the first chord not passed to the listener yet, the lists below begin with it.
+         */
+        private int first;
+        private final List<Integer> roots = new ArrayList<>();
+        private final List<Integer> others = new ArrayList<>();
+        /**
+         * For each chord and key, whether the best path stays in the key, otherwise it comes from the best key of the previous chord.
+         */
+        private final List<boolean[]> stayed = new ArrayList<>();
+        private final List<Integer> bestPrevious = new ArrayList<>();
+
+        private Segmentation(SegmentListener listener) {
+            this.listener = listener;
+        }
+
+        /**
+         * Adds the next chord of the progression, passing the segments which are decided by it to the listener.
+         *
+         * @param chord chord
+         */
+        public void add(Chord chord) {
+            int count = keyBits.length;
+            if (count == 0) {
+                return;
+            }
+            int root = 1 << chord.getRoot().ordinal();
+            int other = ChordAnalyzer.getChordBits(chord) & ~root;
+            roots.add(root);
+            others.add(other);
+            boolean[] stay = new boolean[count];
+            if (length == 0) {
+                bestPrevious.add(0);
+                for (int k = 0; k < count; k++) {
+                    next[k] = emission(root, other, keyBits[k]);
+                    nextAncestors[k] = k;
+                }
+            } else {
+                int best = argmax(score);
+                bestPrevious.add(best);
+                double modulated = score[best] - penalty;
+                for (int k = 0; k < count; k++) {
+                    if (score[k] >= modulated) {
+                        next[k] = score[k];
+                        stay[k] = true;
+                        nextAncestors[k] = ancestors[k];
+                    } else {
+                        next[k] = modulated;
+                        nextAncestors[k] = ancestors[best];
+                    }
+                    next[k] += emission(root, other, keyBits[k]);
+                }
+            }
+            stayed.add(stay);
+            double[] tmp = score;
+            score = next;
+            next = tmp;
+            int[] tmpAncestors = ancestors;
+            ancestors = nextAncestors;
+            nextAncestors = tmpAncestors;
+            length++;
+
+            if (length > 1 && agree()) {
+                pass(checkpoint, ancestors[0], false);
+                //the paths are followed from the new chord again
+                checkpoint = length - 1;
+                for (int k = 0; k < count; k++) {
+                    ancestors[k] = k;
+                }
+            }
+        }
+
+        /**
+         * Ends the progression, passing its remaining segments to the listener.
+         */
+        public void finish() {
+            if (length > first) {
+                pass(length - 1, argmax(score), true);
+            }
+        }
+
+        private boolean agree() {
+            for (int k = 1; k < ancestors.length; k++) {
+                if (ancestors[k] != ancestors[0]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Follows the best path back from a key of a chord and passes its segments.
+         *
+         * @param t index of the chord
+         * @param k key of the chord
+         * @param all whether to pass also the segment containing the chord, otherwise it is kept since it may continue
+         */
+        private void pass(int t, int k, boolean all) {
+            //segment boundaries are collected from the end
+            List<Integer> boundaries = new ArrayList<>();
+            List<Integer> keys = new ArrayList<>();
+            for (; t > first; t--) {
+                if (!stayed.get(t - first)[k]) {
+                    boundaries.add(t);
+                    keys.add(k);
+                    k = bestPrevious.get(t - first);
+                }
+            }
+            boundaries.add(first);
+            keys.add(k);
+
+            int last = all ? 0 : 1;
+            for (int i = boundaries.size() - 1; i >= last; i--) {
+                int from = boundaries.get(i);
+                int to = i > 0 ? boundaries.get(i - 1) : length;
+                int key = keys.get(i);
+                double sum = 0;
+                for (int j = from; j < to; j++) {
+                    sum += emission(roots.get(j - first), others.get(j - first), keyBits[key]);
+                }
+                listener.segment(new WeightedScale(keyScales[key], keyRoots[key], sum / (to - from)), from, to);
+            }
+            int passed = all ? length : boundaries.get(0);
+            int removed = passed - first;
+            roots.subList(0, removed).clear();
+            others.subList(0, removed).clear();
+            stayed.subList(0, removed).clear();
+            bestPrevious.subList(0, removed).clear();
+            first = passed;
+        }
+    }
+
+    private static int argmax(double[] values) {
+        int best = 0;
+        for (int i = 1; i < values.length; i++) {
+            if (values[i] > values[best]) {
+                best = i;
+            }
+        }
+        return best;
+    }
+}
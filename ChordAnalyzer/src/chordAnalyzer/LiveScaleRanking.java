@@ -0,0 +1,118 @@
+package chordAnalyzer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Ranking of scales for a chord progression which grows one chord at a time, for example while it is played on a MIDI keyboard. The result is
+ * the same as that of <code>findScales</code> for all the chords added so far, sorted by descending accuracy.
+ * <br/>
+ * Weights of tones (see <code>ChordAnalyzer.getWeights</code>) only grow when a chord is added, and only for the few tones of the chord. The
+ * weighted number of hits of every class of modes on every root is therefore kept and updated only for the tones whose weight changed, using
+ * precomputed lists of the classes and roots containing each tone, so adding a chord does not score all the scales again.
+ */
+public class LiveScaleRanking {
+
+    private final List<ScaleClass> classes;
+    //for each tone, indices (class * 12 + root) of the classes on roots which contain the tone
+    private final int[][] containing = new int[12][];
+    private final int[] hits;
+    private final int[] weights = new int[12];
+    private int sumWeights = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param classes known scales divided into classes of modes, see <code>ChordAnalyzer.getScaleClasses</code>
+     */
+    public LiveScaleRanking(List<ScaleClass> classes) {
+        this.classes = classes;
+        hits = new int[classes.size() * 12];
+        int[] count = new int[12];
+        for (int pass = 0; pass < 2; pass++) {
+            for (int c = 0; c < classes.size(); c++) {
+                for (int root = 0; root < 12; root++) {
+                    int bits = Scale.rotate(classes.get(c).getBits(), root);
+                    for (int i = 0; i < 12; i++) {
+                        if ((bits & (1 << i)) != 0) {
+                            if (pass == 0) {
+                                count[i]++;
+                            } else {
+                                containing[i][--count[i]] = c * 12 + root;
+                            }
+                        }
+                    }
+                }
+            }
+            if (pass == 0) {
+                for (int i = 0; i < 12; i++) {
+                    containing[i] = new int[count[i]];
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes all the chords.
+     */
+    public void clear() {
+        Arrays.fill(hits, 0);
+        Arrays.fill(weights, 0);
+        sumWeights = 0;
+    }
+
+    /**
+     * Adds a chord to the progression.
+     *
+     * @param root root of the chord
+     * @param tones tones of the chord as a 12-bit pitch class set, see <code>ChordAnalyzer.getChordBits</code>
+     */
+    public void add(Tone root, int tones) {
+        raise(root.ordinal(), ChordAnalyzer.ROOT_WEIGHT);
+        for (int i = 0; i < 12; i++) {
+            if ((tones & (1 << i)) != 0) {
+                raise(i, 1);
+            }
+        }
+    }
+
+    /**
+     * Raises weight of a tone and updates the hits of the scales containing it.
+     */
+    private void raise(int tone, int weight) {
+        int delta = weight - weights[tone];
+        if (delta <= 0) {
+            return;
+        }
+        weights[tone] = weight;
+        sumWeights += delta;
+        for (int k : containing[tone]) {
+            hits[k] += delta;
+        }
+    }
+
+    /**
+     * Gets the suitable scales for the chords added so far.
+     *
+     * @return scales with accuracy bigger than {@code REQUIRED_ACCURACY} with all their modes, sorted by descending accuracy
+     */
+    public List<WeightedScale> getResult() {
+        List<WeightedScale> result = new ArrayList<>();
+        if (sumWeights == 0) {
+            return result;
+        }
+        for (int k = 0; k < hits.length; k++) {
+            double accuracy = (double) hits[k] / sumWeights;
+            if (accuracy > ChordAnalyzer.REQUIRED_ACCURACY) {
+                ScaleClass sc = classes.get(k / 12);
+                for (int m = 0; m < sc.size(); m++) {
+                    result.add(new WeightedScale(sc.getMember(m), Tone.fromSemitones(k % 12 + sc.getOffset(m)), accuracy));
+                }
+            }
+        }
+        Collections.sort(result, Collections.reverseOrder());
+        return result;
+    }
+}
@@ -0,0 +1,166 @@
+package chordAnalyzer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import javax.sound.midi.MidiMessage;
+import javax.sound.midi.Receiver;
+import javax.sound.midi.ShortMessage;
+
+/**
+ * MIDI {@link Receiver} recognizing chords played on a keyboard. Held notes are tracked as a 12-bit pitch class set; whenever it forms a
+ * known chord different from the last recognized one, the chord is added to the progression, the ranking of scales is updated by
+ * {@link LiveScaleRanking} and the listener is notified. A chord is preferably recognized with the lowest held note as its root, otherwise
+ * (for inversions) the first matching chord type in the order of the file <code>chords</code> is taken. Notes of a chord never come at
+ * exactly the same time, so while no note is released, a new chord replaces the previous one instead of being added (a triad growing into
+ * a seventh chord is one chord). When all the notes are released, the same chord played again is added again.
+ * <br/>
+ * All the chords on all roots are put into a lookup table indexed by the pitch class set and the lowest note when the receiver is created,
+ * so recognition of a chord is a single array access and a note takes much less than a millisecond from its note-on to the listener.
+ * <br/>
+ * Messages are processed on the thread of the transmitter, the listener is called on this thread as well.
+ */
+public class MidiChordReceiver implements Receiver {
+
+    /**
+     * Receives chords recognized by a <code>MidiChordReceiver</code>.
+     */
+    public interface ChordListener {
+
+        /**
+         * Called when a new chord is recognized.
+         *
+         * @param progression all the chords recognized so far, the new chord is the last one
+         * @param ranking suitable scales for the progression sorted by descending accuracy
+         */
+        void chordRecognized(List<Chord> progression, List<WeightedScale> ranking);
+    }
+
+    private final int[] chordBits;
+    private final LiveScaleRanking ranking;
+    private final ChordListener listener;
+    //packed chords (type * 12 + root) indexed by pitch class set * 12 + lowest pitch class, and by pitch class set only; -1 if none
+    private final int[] rootPosition = new int[12 << 12];
+    private final int[] anyPosition = new int[1 << 12];
+    //number of held keys of each MIDI note, several channels may hold the same note
+    private final int[] held = new int[128];
+    private final int[] heldClasses = new int[12];
+    private int pitchClasses = 0;
+    //last recognized chord while any of its notes is held, -1 after all the notes are released
+    private int lastChord = -1;
+    //true while the notes of the last recognized chord are being added and none was released
+    private boolean growing = false;
+    private final List<Chord> progression = new ArrayList<>();
+    //tones of the chords of the progression as pitch class sets
+    private final List<Integer> progressionBits = new ArrayList<>();
+
+    /**
+     * Constructor.
+     *
+     * @param chordBits tonal masks of known chord types as 12-bit pitch class sets, in the order of the file <code>chords</code>
+     * @param classes known scales divided into classes of modes, see <code>ChordAnalyzer.getScaleClasses</code>
+     * @param listener listener notified about recognized chords
+     */
+    public MidiChordReceiver(int[] chordBits, List<ScaleClass> classes, ChordListener listener) {
+        this.chordBits = chordBits.clone();
+        this.ranking = new LiveScaleRanking(classes);
+        this.listener = listener;
+        Arrays.fill(rootPosition, -1);
+        Arrays.fill(anyPosition, -1);
+        for (int type = 0; type < chordBits.length; type++) {
+            for (int root = 0; root < 12; root++) {
+                int tones = Scale.rotate(chordBits[type], root) | (1 << root);
+                if (rootPosition[tones * 12 + root] == -1) {
+                    rootPosition[tones * 12 + root] = type * 12 + root;
+                }
+                if (anyPosition[tones] == -1) {
+                    anyPosition[tones] = type * 12 + root;
+                }
+            }
+        }
+    }
+
+    /**
+     * Processes a MIDI message, only note-on and note-off messages are used.
+     *
+     * @param message MIDI message
+     * @param timeStamp time of the message in microseconds, ignored
+     */
+    @Override
+    public synchronized void send(MidiMessage message, long timeStamp) {
+        if (!(message instanceof ShortMessage)) {
+            return;
+        }
+        ShortMessage sm = (ShortMessage) message;
+        int note = sm.getData1();
+        if (sm.getCommand() == ShortMessage.NOTE_ON && sm.getData2() > 0) {
+            if (held[note]++ == 0 && heldClasses[note % 12]++ == 0) {
+                pitchClasses |= 1 << (note % 12);
+            }
+            recognize();
+        } else if (sm.getCommand() == ShortMessage.NOTE_OFF || sm.getCommand() == ShortMessage.NOTE_ON) {
+            //note-on with zero velocity means note-off
+            if (held[note] > 0 && --held[note] == 0 && --heldClasses[note % 12] == 0) {
+                pitchClasses &= ~(1 << (note % 12));
+            }
+            growing = false;
+            if (pitchClasses == 0) {
+                lastChord = -1;
+            }
+        }
+    }
+
+    /**
+     * Looks up the held notes in the table of chords and reports a new chord.
+     */
+    private void recognize() {
+        int lowest = 0;
+        while (held[lowest] == 0) {
+            lowest++;
+        }
+        int chord = rootPosition[pitchClasses * 12 + lowest % 12];
+        if (chord == -1) {
+            chord = anyPosition[pitchClasses];
+        }
+        if (chord == -1 || chord == lastChord) {
+            return;
+        }
+        lastChord = chord;
+        Chord recognized = ChordAnalyzer.getChord(Tone.fromSemitones(chord % 12), chord / 12);
+        int tones = Scale.rotate(chordBits[chord / 12], chord % 12);
+        if (growing) {
+            //the previous chord was only a part of this one, weights of tones cannot decrease, so the ranking is computed again
+            progression.set(progression.size() - 1, recognized);
+            progressionBits.set(progressionBits.size() - 1, tones);
+            ranking.clear();
+            for (int i = 0; i < progression.size(); i++) {
+                ranking.add(progression.get(i).getRoot(), progressionBits.get(i));
+            }
+        } else {
+            progression.add(recognized);
+            progressionBits.add(tones);
+            ranking.add(recognized.getRoot(), tones);
+        }
+        growing = true;
+        listener.chordRecognized(Collections.unmodifiableList(new ArrayList<>(progression)), ranking.getResult());
+    }
+
+    /**
+     * Forgets the recognized chords and starts a new progression.
+     */
+    public synchronized void reset() {
+        progression.clear();
+        progressionBits.clear();
+        ranking.clear();
+        lastChord = -1;
+        growing = false;
+    }
+
+    /**
+     * Closes the receiver, nothing needs to be released.
+     */
+    @Override
+    public void close() {
+    }
+}
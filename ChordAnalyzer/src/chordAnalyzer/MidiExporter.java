@@ -0,0 +1,248 @@
+package chordAnalyzer;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MetaMessage;
+import javax.sound.midi.MidiEvent;
+import javax.sound.midi.MidiMessage;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Track;
+
+/**
+ * Export of scales and their suitable chords to standard MIDI files. The file has two tracks: the scale played upwards from its root to the
+ * root an octave higher (as by the button "Přehrát"), and the suitable chords found by <code>findSuitableChords</code>, one after another
+ * in the order of the rows of the details view. Names of the scale and chords are stored as text events, so they are displayed by most
+ * sequencers.
+ * <br/>
+ * <code>exportAll</code> writes many scales in parallel, every file is written directly to disk as soon as its sequence is built.
+ * <code>exportCorpus</code> does the same for the results of every progression of a corpus, which is read line by line, so only the
+ * progressions being exported are held in memory.
+ */
+public class MidiExporter {
+
+    /**
+     * Resolution of the files in ticks per quarter note.
+     */
+    public static final int RESOLUTION = 480;
+    //MIDI note 48 is mid C, as in the playback
+    private static final int MID_C = 48;
+    private static final int VELOCITY = 75;
+
+    private MidiExporter() {
+    }
+
+    /**
+     * Builds a MIDI sequence of a scale and its suitable chords. Tones of the scale are quarter notes, chords are half notes.
+     *
+     * @param wscale scale to be exported
+     * @param chords suitable chords of the scale, see <code>ChordAnalyzer.findSuitableChords</code>
+     * @return MIDI sequence
+     * @throws InvalidMidiDataException if a MIDI message cannot be created
+     */
+    public static Sequence toSequence(WeightedScale wscale, Chord[][] chords) throws InvalidMidiDataException {
+        Sequence sequence = new Sequence(Sequence.PPQ, RESOLUTION);
+        int root = MID_C + wscale.getRoot().ordinal();
+
+        Track scaleTrack = sequence.createTrack();
+        scaleTrack.add(new MidiEvent(text(3, wscale.toString()), 0));
+        long tick = 0;
+        for (int i : wscale.getMask()) {
+            addNote(scaleTrack, root + i, tick, RESOLUTION);
+            tick += RESOLUTION;
+        }
+        addNote(scaleTrack, root + 12, tick, RESOLUTION);
+
+        Track chordTrack = sequence.createTrack();
+        chordTrack.add(new MidiEvent(text(3, "Akordy"), 0));
+        tick = 0;
+        for (Chord[] row : chords) {
+            for (Chord chord : row) {
+                chordTrack.add(new MidiEvent(text(1, chord.getRoot().toString() + chord.getName()), tick));
+                for (int i : ChordAnalyzer.getChordMask(chord)) {
+                    addNote(chordTrack, MID_C + chord.getRoot().ordinal() + i, tick, 2 * RESOLUTION);
+                }
+                tick += 2 * RESOLUTION;
+            }
+        }
+        return sequence;
+    }
+
+    private static void addNote(Track track, int note, long tick, int length) throws InvalidMidiDataException {
+        track.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_ON, 0, note, VELOCITY), tick));
+        track.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_OFF, 0, note, 0), tick + length - 1));
+    }
+
+    private static MidiMessage text(int type, String text) throws InvalidMidiDataException {
+        byte[] data = text.getBytes(StandardCharsets.UTF_8);
+        return new MetaMessage(type, data, data.length);
+    }
+
+    /**
+     * Writes a scale and its suitable chords to a standard MIDI file of type 1.
+     *
+     * @param wscale scale to be exported
+     * @param chords suitable chords of the scale, see <code>ChordAnalyzer.findSuitableChords</code>
+     * @param file file to be written
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(WeightedScale wscale, Chord[][] chords, File file) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+            MidiSystem.write(toSequence(wscale, chords), 1, out);
+        } catch (InvalidMidiDataException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    /**
+     * Gets a file name for a scale, characters not allowed in file names are replaced by underscores.
+     *
+     * @param wscale scale to be exported
+     * @return file name with the extension <code>.mid</code>
+     */
+    public static String fileName(WeightedScale wscale) {
+        return wscale.toString().replaceAll("[\\\\/:*?\"<>|]", "_") + ".mid";
+    }
+
+    /**
+     * Gets a file name for a scale in an exported list, see <code>fileName(WeightedScale)</code>.
+     *
+     * @param index number of the scale in the exported list, which makes the names unique
+     * @param wscale scale to be exported
+     * @return file name with the number of the scale and the extension <code>.mid</code>
+     */
+    public static String fileName(int index, WeightedScale wscale) {
+        return String.format("%03d %s", index + 1, fileName(wscale));
+    }
+
+    /**
+     * Writes each of given scales with its suitable chords to a separate file. Files are written in parallel.
+     *
+     * @param wscales scales to be exported, for example the result of an analysis
+     * @param directory directory for the files, created if it does not exist
+     * @param threads number of threads writing the files
+     * @return written files in the order of the scales
+     * @throws IOException if some of the files cannot be written
+     */
+    public static List<File> exportAll(List<WeightedScale> wscales, final File directory, int threads) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<File>> futures = new ArrayList<>();
+            for (int i = 0; i < wscales.size(); i++) {
+                final WeightedScale wscale = wscales.get(i);
+                final File file = new File(directory, fileName(i, wscale));
+                futures.add(executor.submit(new Callable<File>() {
+                    @Override
+                    public File call() throws IOException {
+                        write(wscale, ChordAnalyzer.findSuitableChords(wscale), file);
+                        return file;
+                    }
+                }));
+            }
+            List<File> result = new ArrayList<>();
+            for (Future<File> future : futures) {
+                result.add(future.get());
+            }
+            return result;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException(ex);
+        } catch (ExecutionException ex) {
+            throw ex.getCause() instanceof IOException ? (IOException) ex.getCause() : new IOException(ex.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Analyzes every progression of a corpus and writes each found scale with its suitable chords to a separate file. The corpus has the
+     * format of {@link ShardedBatchRunner}, one progression per line. Results of a line are written to a subdirectory named by the number of
+     * the line, in the order of <code>ChordAnalyzer.analyze</code>. Lines are analyzed and written in parallel while the corpus is read;
+     * lines with unknown chords are reported to the error output and skipped. The known chords must be loaded.
+     *
+     * @param corpus corpus file
+     * @param directory directory for the subdirectories, created if it does not exist
+     * @param threads number of threads analyzing the lines and writing the files
+     * @return number of written files
+     * @throws IOException if the corpus cannot be read or some of the files cannot be written
+     */
+    public static int exportCorpus(File corpus, final File directory, int threads) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        final ChordParser parser = ChordAnalyzer.getChordParser();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        //lines being exported, the oldest one is waited for when there are too many, so the corpus is not read ahead without limit
+        Deque<Future<Integer>> pending = new ArrayDeque<>();
+        int written = 0;
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(corpus), "UTF-8"))) {
+            String line;
+            long number = 0;
+            while ((line = in.readLine()) != null) {
+                number++;
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                final long lineNumber = number;
+                final String progression = line;
+                pending.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws IOException {
+                        List<Chord> chords;
+                        try {
+                            chords = parser.parseProgression(progression);
+                        } catch (IllegalArgumentException ex) {
+                            System.err.println(lineNumber + ": neznámý akord " + ex.getMessage());
+                            return 0;
+                        }
+                        List<WeightedScale> result = ChordAnalyzer.analyze(chords.toArray(new Chord[0]));
+                        File lineDirectory = new File(directory, Long.toString(lineNumber));
+                        if (!lineDirectory.isDirectory() && !lineDirectory.mkdir()) {
+                            throw new IOException("Cannot create " + lineDirectory);
+                        }
+                        for (int i = 0; i < result.size(); i++) {
+                            WeightedScale wscale = result.get(i);
+                            write(wscale, ChordAnalyzer.findSuitableChords(wscale), new File(lineDirectory, fileName(i, wscale)));
+                        }
+                        return result.size();
+                    }
+                }));
+                if (pending.size() > 4 * threads) {
+                    written += pending.poll().get();
+                }
+            }
+            while (!pending.isEmpty()) {
+                written += pending.poll().get();
+            }
+            return written;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException(ex);
+        } catch (ExecutionException ex) {
+            throw ex.getCause() instanceof IOException ? (IOException) ex.getCause() : new IOException(ex.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
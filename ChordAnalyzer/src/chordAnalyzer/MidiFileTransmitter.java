@@ -0,0 +1,111 @@
+package chordAnalyzer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MetaMessage;
+import javax.sound.midi.MidiEvent;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.Receiver;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.Track;
+import javax.sound.midi.Transmitter;
+
+/**
+ * {@link Transmitter} replaying a standard MIDI file, a stand-in for a MIDI keyboard, so that a {@link Receiver} such as
+ * {@link MidiChordReceiver} can be used without any hardware. Events of all the tracks are merged in the order of time and sent with time
+ * stamps in microseconds computed from the resolution and tempo changes of the file.
+ */
+public class MidiFileTransmitter implements Transmitter {
+
+    private final List<MidiEvent> events = new ArrayList<>();
+    private final long[] micros;
+    private Receiver receiver;
+
+    /**
+     * Constructor. Reads the whole file.
+     *
+     * @param file standard MIDI file
+     * @throws IOException if the file cannot be read
+     * @throws InvalidMidiDataException if the file is not a valid MIDI file
+     */
+    public MidiFileTransmitter(File file) throws IOException, InvalidMidiDataException {
+        Sequence sequence = MidiSystem.getSequence(file);
+        for (Track track : sequence.getTracks()) {
+            for (int i = 0; i < track.size(); i++) {
+                events.add(track.get(i));
+            }
+        }
+        //stable sort keeps the order of events with the same tick within a track
+        Collections.sort(events, new Comparator<MidiEvent>() {
+            @Override
+            public int compare(MidiEvent a, MidiEvent b) {
+                return Long.compare(a.getTick(), b.getTick());
+            }
+        });
+
+        micros = new long[events.size()];
+        boolean ppq = sequence.getDivisionType() == Sequence.PPQ;
+        double tickMicros = ppq ? 500000.0 / sequence.getResolution()
+                : 1000000.0 / (sequence.getDivisionType() * sequence.getResolution());
+        long lastTick = 0;
+        double time = 0;
+        for (int i = 0; i < events.size(); i++) {
+            MidiEvent event = events.get(i);
+            time += (event.getTick() - lastTick) * tickMicros;
+            lastTick = event.getTick();
+            micros[i] = (long) time;
+            //tempo change, microseconds per quarter note
+            if (ppq && event.getMessage() instanceof MetaMessage && ((MetaMessage) event.getMessage()).getType() == 0x51) {
+                byte[] data = ((MetaMessage) event.getMessage()).getData();
+                int tempo = ((data[0] & 0xFF) << 16) | ((data[1] & 0xFF) << 8) | (data[2] & 0xFF);
+                tickMicros = (double) tempo / sequence.getResolution();
+            }
+        }
+    }
+
+    /**
+     * Sends all the events of the file to the receiver.
+     *
+     * @param realTime <code>true</code> to wait between events as when the file is played, <code>false</code> to send them as fast as
+     * possible
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public void replay(boolean realTime) throws InterruptedException {
+        long start = System.nanoTime();
+        for (int i = 0; i < events.size(); i++) {
+            if (realTime) {
+                long wait = micros[i] - (System.nanoTime() - start) / 1000;
+                if (wait > 0) {
+                    Thread.sleep(wait / 1000, (int) (wait % 1000) * 1000);
+                }
+            }
+            Receiver r = receiver;
+            if (r != null && !(events.get(i).getMessage() instanceof MetaMessage)) {
+                r.send(events.get(i).getMessage(), micros[i]);
+            }
+        }
+    }
+
+    @Override
+    public void setReceiver(Receiver receiver) {
+        this.receiver = receiver;
+    }
+
+    @Override
+    public Receiver getReceiver() {
+        return receiver;
+    }
+
+    /**
+     * Closes the transmitter, the file is already read.
+     */
+    @Override
+    public void close() {
+        receiver = null;
+    }
+}
@@ -1,57 +1,93 @@
 package chordAnalyzer;
 
 import java.awt.Color;
-import java.awt.Dimension;
 import java.awt.Font;
 import java.awt.Graphics;
-import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
-import javax.imageio.ImageIO;
-import javax.swing.JPanel;
 
 /**
- * Customized JPanel for displaying piano keyboard with keys highlighted accordingly to currently selected scale. Redefines the <code>paintComponent</code> method
- * to paint a piano claviature from the file <code>piano.jpg</code> on the background and graphic representation of a given scale on the front. A scale is represented
+ * Customized {@link ImagePanel} for displaying piano keyboard with keys highlighted accordingly to currently selected scale. Paints a piano claviature from the file <code>piano.jpg</code> on the background and graphic representation of a given scale on the front. A scale is represented
  * by highlighting the correct keys on a claviature with color, using the <code>fillPolygon</code> method of a <code>Graphics</code> class. Coordinates of the polygon are
  * specific for each key on a piano, because they have different shapes. Used claviature has three octaves, so the painting of a polygon is repeated three times
  * with a proper shift.
+ * <br/>
+ * A voicing of a chord (see {@link PianoVoicings}) can be marked on the keys by <code>setVoicing</code>.
  *  */
-public class PianoPanel extends JPanel {
+public class PianoPanel extends ImagePanel {
 
-        private BufferedImage _image;
-        private WeightedScale _scale;
+        private static final Color TONE_COLOR = new Color(255, 255, 100, 255);
+        private static final Color ROOT_COLOR = new Color(250, 150, 50, 255);
+        private static final Font TONE_FONT = new Font("arial", Font.BOLD, 15);
+        private static final Color VOICING_COLOR = new Color(30, 110, 230);
+        //x-coordinates of the marks of a voicing on the keys of the first octave, and y-coordinates on white and black keys
+        private static final int[] VOICING_X = new int[]{19, 30, 54, 65, 89, 124, 135, 159, 170, 194, 205, 229};
+        private static final int WHITE_Y = 110;
+        private static final int BLACK_Y = 45;
+        private static final int VOICING_SIZE = 14;
+
+        //keys of the marked voicing, null if none
+        private int[] voicing;
 
     /**
-     * Constructor. Loads image 'piano.jpg' which is painted on the panel and
-     * sets dimensions of the panel to hold the image.
+     * Constructor. Sets dimensions of the panel to hold the image
+     * 'piano.jpg', which is decoded later by <code>loadImage</code>.
      *
      * @throws IOException
      */
         public PianoPanel() throws IOException {
-            _image = ImageIO.read(new File("piano.jpg"));
-
-            this.setPreferredSize(new Dimension(_image.getWidth(), _image.getHeight()));
-            this.setMinimumSize(new Dimension(_image.getWidth(), _image.getHeight()));
+            super(new File("piano.jpg"));
         }
 
-        /**
-         * Updates the panel to display currently selected scale.
-         * 
-         * @param wscale currently selected scale
-         */
+    /**
+     * Updates the panel to display currently selected scale, the marked voicing is removed.
+     *
+     * @param wscale currently selected scale
+     */
+        @Override
         public void setScale(WeightedScale wscale) {
-            _scale = wscale;
+            voicing = null;
+            super.setScale(wscale);
+        }
+
+    /**
+     * Marks keys of a chord voicing over the scale.
+     *
+     * @param voicing keys from 0 to <code>PianoVoicings.KEYS - 1</code>, see {@link PianoVoicings}, or <code>null</code> for no voicing
+     */
+        public void setVoicing(int[] voicing) {
+            this.voicing = voicing;
             this.repaint();
         }
 
+    /**
+     * Highlights the tones of the scale and marks the keys of the voicing.
+     *
+     * @param g Graphics object to be drawn to
+     */
+        @Override
+        protected void paintScale(Graphics g) {
+            super.paintScale(g);
+            if (voicing == null) {
+                return;
+            }
+            g.setColor(VOICING_COLOR);
+            for (int key : voicing) {
+                int pc = key % 12;
+                boolean black = pc == 1 || pc == 3 || pc == 6 || pc == 8 || pc == 10;
+                int x = VOICING_X[pc] + (key / 12) * ((_image.getWidth() - 2) / 3);
+                g.fillOval(x - VOICING_SIZE / 2, (black ? BLACK_Y : WHITE_Y) - VOICING_SIZE / 2, VOICING_SIZE, VOICING_SIZE);
+            }
+        }
+
         /**
      * Highlights specific tone in all his occurencies on a keyboard.
      *
      * @param t tone to be highlighted
      * @param g Graphics object to be drawn to
      */
-        private void paintTone(Tone t, Graphics g) {
+        @Override
+        protected void paintTone(Tone t, Graphics g) {
             //arrays for storing the points of a rectangle
             int[] intsx;
             int[] intsy;
@@ -146,11 +182,11 @@ public class PianoPanel extends JPanel {
 
             //highlights the tone in all three octaves that are displayed on the keyboard
             for (int k = 0; k < 3; k++) {
-                g.setColor(new Color(255, 255, 100, 255));
+                g.setColor(TONE_COLOR);
                 
                 //root is distinguished with different color
                 if (t.equals(_scale.getRoot())) {
-                    g.setColor(new Color(250, 150, 50, 255));
+                    g.setColor(ROOT_COLOR);
                 }
                 //x-coordinates are shifted three times to span across the keyboard
                 int[] tmpIntsx = new int[intsx.length];
@@ -159,28 +195,9 @@ public class PianoPanel extends JPanel {
                 }
                 //highlighting a key and drawing a name of underlying tone
                 g.fillPolygon(tmpIntsx, intsy, pointCount);
-                g.setFont(new Font("arial", Font.BOLD, 15));
+                g.setFont(TONE_FONT);
                 g.setColor(Color.black);
                 g.drawString(t.toString(), labelXY[0] + k * ((_image.getWidth() - 2) / 3), labelXY[1]);
             }
         }
-
-        /**
-         * Paints component itself, piano keyboard from image 'piano.jpg' and highlights all 
-         * the tones from currently displayed scale.
-         * 
-         * @param g Graphics object to be drawn to.
-         */
-        @Override
-        protected void paintComponent(Graphics g) {
-            super.paintComponent(g);
-            g.drawImage(_image, 0, 0, null);
-
-            if (_scale != null) {
-                for (Tone t : _scale.getTones()) {
-                    paintTone(t, g);
-                }
-            }
-        }
     }
-
@@ -0,0 +1,193 @@
+package chordAnalyzer;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Generates piano voicings of chords on the three-octave keyboard of {@link PianoPanel}. A voicing is an ascending array of keys, key 0 being
+ * the lowest C of the keyboard and key 35 the highest B. Three styles are generated for every inversion of a chord:
+ * <ul>
+ * <li>close: all the tones of the chord within an octave, the tone of the inversion in the bass,</li>
+ * <li>drop 2: the close voicing with the second highest tone dropped an octave lower, for chords of at least four tones,</li>
+ * <li>rootless: the close voicing without the root, and without the fifth for chords of more than five tones, for chords of at least four
+ * tones.</li>
+ * </ul>
+ * The shape of a voicing depends only on the chord type and the inversion, so shapes are computed once for the root C and remembered; a chord
+ * on another root is the shape shifted by its root. All placements of the shifted shape on the keyboard are then enumerated: shapes wider than
+ * <code>MAX_SPAN</code> and placements leaving the keyboard are pruned, and of the rest the one closest to the middle of the keyboard wins,
+ * avoiding small intervals in the lowest octave, which sound muddy.
+ */
+public class PianoVoicings {
+
+    /**
+     * Styles of voicings.
+     */
+    public enum Style {
+
+        CLOSE("těsná"), DROP_2("drop 2"), ROOTLESS("bez základního tónu");
+
+        private final String name;
+
+        Style(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /**
+     * Number of keys of the keyboard.
+     */
+    public static final int KEYS = 36;
+    /**
+     * Largest distance between the lowest and the highest key of a voicing in semitones, two hands are expected.
+     */
+    public static final int MAX_SPAN = 24;
+    //intervals smaller than this in the lowest octave are penalized
+    private static final int LOW_INTERVAL_LIMIT = 3;
+
+    //shapes for the root C indexed by the pitch class set of the chord * 16 + inversion, then by style; null if the style is not applicable
+    private final Map<Integer, int[][]> cache = new HashMap<>();
+
+    /**
+     * Gets number of inversions of a chord, which is the number of its distinct tones.
+     *
+     * @param chord chord of a known type
+     * @return number of inversions
+     */
+    public static int getInversions(Chord chord) {
+        return Integer.bitCount(ChordAnalyzer.getChordBits(chord));
+    }
+
+    /**
+     * Finds voicings of a chord in all styles.
+     *
+     * @param chord chord of a known type
+     * @param inversion index of the tone in the bass, 0 for the root, up to <code>getInversions(chord) - 1</code>
+     * @return voicings indexed by the ordinal of {@link Style}, <code>null</code> where the style is not applicable or the voicing does not
+     * fit the keyboard
+     */
+    public int[][] find(Chord chord, int inversion) {
+        int root = chord.getRoot().ordinal();
+        int[][] shapes = getShapes(Scale.rotate(ChordAnalyzer.getChordBits(chord), (12 - root) % 12), inversion);
+        int[][] result = new int[shapes.length][];
+        for (int s = 0; s < shapes.length; s++) {
+            if (shapes[s] != null) {
+                result[s] = place(shapes[s], root);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets shapes of voicings of a chord with the root C, computed when needed for the first time.
+     */
+    private synchronized int[][] getShapes(int tones, int inversion) {
+        int key = tones * 16 + inversion;
+        int[][] shapes = cache.get(key);
+        if (shapes == null) {
+            shapes = new int[Style.values().length][];
+            int[] close = close(tones, inversion);
+            if (close != null) {
+                shapes[Style.CLOSE.ordinal()] = close;
+                if (close.length >= 4) {
+                    int[] drop = new int[close.length];
+                    drop[0] = close[close.length - 2] - 12;
+                    System.arraycopy(close, 0, drop, 1, close.length - 2);
+                    drop[close.length - 1] = close[close.length - 1];
+                    shapes[Style.DROP_2.ordinal()] = drop;
+
+                    int rootless = tones & ~1;
+                    if (Integer.bitCount(rootless) > 4) {
+                        rootless &= ~(1 << 7);
+                    }
+                    //the inversion is counted among the remaining tones
+                    shapes[Style.ROOTLESS.ordinal()] = close(rootless, inversion);
+                }
+            }
+            for (int s = 0; s < shapes.length; s++) {
+                if (shapes[s] != null && shapes[s][shapes[s].length - 1] - shapes[s][0] > MAX_SPAN) {
+                    shapes[s] = null;
+                }
+            }
+            cache.put(key, shapes);
+        }
+        return shapes;
+    }
+
+    /**
+     * Stacks the tones upwards from the tone of the inversion, each next tone being the nearest higher tone of the chord.
+     *
+     * @return ascending semitones, or <code>null</code> if the chord has no such inversion
+     */
+    private static int[] close(int tones, int inversion) {
+        int count = Integer.bitCount(tones);
+        if (inversion >= count) {
+            return null;
+        }
+        int[] pitchClasses = new int[count];
+        int counter = 0;
+        for (int i = 0; i < 12; i++) {
+            if ((tones & (1 << i)) != 0) {
+                pitchClasses[counter++] = i;
+            }
+        }
+        int[] result = new int[count];
+        for (int i = 0; i < count; i++) {
+            int index = inversion + i;
+            result[i] = pitchClasses[index % count] + 12 * (index / count);
+        }
+        return result;
+    }
+
+    /**
+     * Shifts a shape to the root and chooses its best placement on the keyboard.
+     *
+     * @return keys of the voicing, or <code>null</code> if no placement fits the keyboard
+     */
+    private static int[] place(int[] shape, int root) {
+        int[] best = null;
+        int bestCost = Integer.MAX_VALUE;
+        //the lowest placement has its bass in the lowest octave
+        int start = root;
+        while (start + shape[0] >= 12) {
+            start -= 12;
+        }
+        while (start + shape[0] < 0) {
+            start += 12;
+        }
+        for (int shift = start; shift + shape[shape.length - 1] < KEYS; shift += 12) {
+            int cost = Math.abs(2 * shift + shape[0] + shape[shape.length - 1] - KEYS);
+            for (int i = 1; i < shape.length && shift + shape[i] < 12; i++) {
+                if (shape[i] - shape[i - 1] < LOW_INTERVAL_LIMIT) {
+                    cost += 12;
+                }
+            }
+            if (cost < bestCost) {
+                bestCost = cost;
+                best = new int[shape.length];
+                for (int i = 0; i < shape.length; i++) {
+                    best[i] = shift + shape[i];
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Formats a voicing as names of the tones from the lowest, with the octave of the keyboard from 1 to 3, e.g. <code>C1 E1 G1</code>.
+     *
+     * @param voicing keys of the voicing
+     * @return text representation of the voicing
+     */
+    public static String format(int[] voicing) {
+        StringBuilder sb = new StringBuilder();
+        for (int key : voicing) {
+            sb.append(Tone.fromSemitones(key)).append(key / 12 + 1).append(" ");
+        }
+        return sb.substring(0, sb.length() - 1);
+    }
+}
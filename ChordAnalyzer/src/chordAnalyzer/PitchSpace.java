@@ -0,0 +1,119 @@
+package chordAnalyzer;
+
+/**
+ * Equal division of the octave into a given number of steps (N-EDO), a generalisation of the twelve semitones used by the rest of the
+ * application. Sets of tones are stored as <code>long</code> bitsets, bit <code>i</code> standing for the step <code>i</code> above the root,
+ * so spaces of up to 64 steps (for example 19-, 24- and 31-EDO) are supported and transposition is a single bit rotation.
+ * <br/>
+ * Tonal masks from the files <code>scales</code> and <code>chords</code> are given in semitones, they are mapped onto the nearest steps of the
+ * space by <code>fromSemitones</code>. For 24-EDO this is exact, for 19- and 31-EDO it gives the usual meantone spelling (a minor third of 31-EDO
+ * has 8 steps, a major third 10 steps).
+ */
+public class PitchSpace {
+
+    /**
+     * The largest supported number of steps in an octave.
+     */
+    public static final int MAX_SIZE = 64;
+
+    private final int size;
+    private final long mask;
+    //steps corresponding to semitones C to B
+    private final int[] semitoneSteps = new int[12];
+
+    /**
+     * Constructor.
+     *
+     * @param size number of equal steps in an octave, from 1 to {@code MAX_SIZE}
+     * @throws IllegalArgumentException if the size is not supported
+     */
+    public PitchSpace(int size) {
+        if (size < 1 || size > MAX_SIZE) {
+            throw new IllegalArgumentException("Unsupported number of steps " + size);
+        }
+        this.size = size;
+        this.mask = size == 64 ? -1L : (1L << size) - 1;
+        for (int i = 0; i < 12; i++) {
+            semitoneSteps[i] = (int) Math.round(i * size / 12.0) % size;
+        }
+    }
+
+    /**
+     * Gets number of steps in an octave.
+     *
+     * @return number of steps
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Converts a tonal mask given in steps to a bitset. Intervals larger than an octave are reduced into the octave.
+     *
+     * @param steps tonal mask in steps of this space
+     * @return bit representation of the mask
+     */
+    public long toBits(int[] steps) {
+        long result = 0;
+        for (int i : steps) {
+            result |= 1L << (i % size);
+        }
+        return result;
+    }
+
+    /**
+     * Rotates a bitset up by given number of steps.
+     *
+     * @param bits set of tones
+     * @param steps number of steps from 0 to <code>size() - 1</code>
+     * @return transposed set of tones
+     */
+    public long rotate(long bits, int steps) {
+        if (steps == 0) {
+            return bits;
+        }
+        return ((bits << steps) | (bits >>> (size - steps))) & mask;
+    }
+
+    /**
+     * Maps a number of semitones onto the nearest step of this space.
+     *
+     * @param semitones number of semitones above C
+     * @return step from 0 to <code>size() - 1</code>
+     */
+    public int fromSemitones(int semitones) {
+        return semitoneSteps[((semitones % 12) + 12) % 12];
+    }
+
+    /**
+     * Maps a 12-bit pitch class set onto this space, see <code>fromSemitones</code>.
+     *
+     * @param bits 12-bit pitch class set, see <code>Scale.toBits</code>
+     * @return set of tones of this space
+     */
+    public long fromTwelveTone(int bits) {
+        long result = 0;
+        for (int i = 0; i < 12; i++) {
+            if ((bits & (1 << i)) != 0) {
+                result |= 1L << semitoneSteps[i];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets the name of a step. Steps corresponding to the twelve semitones are named as {@link Tone}s, the others as the number of steps
+     * above C and the size of the space, for example <code>3\31</code>.
+     *
+     * @param step step from 0 to <code>size() - 1</code>
+     * @return name of the step
+     */
+    public String getName(int step) {
+        for (int i = 0; i < 12; i++) {
+            if (semitoneSteps[i] == step) {
+                return Tone.fromSemitones(i).toString();
+            }
+        }
+        return step + "\\" + size;
+    }
+}
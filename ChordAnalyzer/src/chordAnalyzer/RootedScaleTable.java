@@ -0,0 +1,118 @@
+package chordAnalyzer;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Interned table of all the known scales on all the twelve roots. Entries are ordered by the classes of modes (see {@link ScaleClass}), then
+ * by the root of the representative of the class and then by the members of the class, which is the order of the result of
+ * <code>ChordAnalyzer.findScales</code>. The analysis computes accuracies into an array parallel to the table, so scoring allocates nothing.
+ * <br/>
+ * A {@link WeightedScale} is observable only through its scale, its root and its accuracy in percent, so for every entry and every percent
+ * a single shared object is created on first use and returned by all later analyses, together with its array of tones.
+ */
+public class RootedScaleTable {
+
+    private static final int PERCENTS = 101;
+
+    private final List<ScaleClass> classes;
+    //index of the first entry of each class, entries of a class on a root follow each other
+    private final int[] classStart;
+    private final Scale[] scales;
+    private final Tone[] roots;
+    private final AtomicReferenceArray<WeightedScale> flyweights;
+
+    /**
+     * Constructor.
+     *
+     * @param classes classes of modes of the known scales
+     */
+    public RootedScaleTable(List<ScaleClass> classes) {
+        this.classes = classes;
+        classStart = new int[classes.size() + 1];
+        for (int c = 0; c < classes.size(); c++) {
+            classStart[c + 1] = classStart[c] + 12 * classes.get(c).size();
+        }
+        scales = new Scale[classStart[classes.size()]];
+        roots = new Tone[scales.length];
+        for (int c = 0; c < classes.size(); c++) {
+            ScaleClass sc = classes.get(c);
+            for (int root = 0; root < 12; root++) {
+                for (int m = 0; m < sc.size(); m++) {
+                    int i = classStart[c] + root * sc.size() + m;
+                    scales[i] = sc.getMember(m);
+                    roots[i] = Tone.fromSemitones(root + sc.getOffset(m));
+                }
+            }
+        }
+        flyweights = new AtomicReferenceArray<>(scales.length * PERCENTS);
+    }
+
+    /**
+     * Gets the classes of modes the table was built from.
+     *
+     * @return classes of modes
+     */
+    public List<ScaleClass> getClasses() {
+        return classes;
+    }
+
+    /**
+     * Gets number of entries, i.e. twelve times the number of known scales.
+     *
+     * @return number of entries
+     */
+    public int size() {
+        return scales.length;
+    }
+
+    /**
+     * Gets index of the first entry of a class of modes on a root of its representative.
+     *
+     * @param classIndex index of the class
+     * @param root root of the representative in semitones above C
+     * @return index of the entry of the first member, the other members follow
+     */
+    public int indexOf(int classIndex, int root) {
+        return classStart[classIndex] + root * classes.get(classIndex).size();
+    }
+
+    /**
+     * Gets the scale of an entry.
+     *
+     * @param i index of the entry
+     * @return scale without a root
+     */
+    public Scale getScale(int i) {
+        return scales[i];
+    }
+
+    /**
+     * Gets the root of an entry.
+     *
+     * @param i index of the entry
+     * @return root tone
+     */
+    public Tone getRoot(int i) {
+        return roots[i];
+    }
+
+    /**
+     * Gets the shared {@link WeightedScale} of an entry with given accuracy.
+     *
+     * @param i index of the entry
+     * @param accuracy number from 0 to 1
+     * @return object with the scale and the root of the entry and the accuracy rounded down to percent
+     */
+    public WeightedScale get(int i, double accuracy) {
+        int percent = Math.max(0, Math.min(PERCENTS - 1, (int) (accuracy * 100)));
+        int key = i * PERCENTS + percent;
+        WeightedScale w = flyweights.get(key);
+        if (w == null) {
+            //half a percent keeps the accuracy from being rounded down to the lower percent
+            flyweights.compareAndSet(key, null, new WeightedScale(scales[i], roots[i], (percent + 0.5) / 100));
+            w = flyweights.get(key);
+        }
+        return w;
+    }
+}
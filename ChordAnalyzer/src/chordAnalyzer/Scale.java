@@ -7,6 +7,7 @@ package chordAnalyzer;
 public class Scale {
 
     private int[] mask;
+    private int bits;
     private String name;
 
     /**
@@ -17,9 +18,36 @@ public class Scale {
      */
     public Scale(String name, int[] mask) {
         this.mask = mask;
+        this.bits = toBits(mask);
         this.name = name;
     }
 
+    /**
+     * Converts a tonal mask to a 12-bit pitch class set, bit 0 standing for the root and bit 11 for the major seventh.
+     * Intervals larger than an octave are reduced into the octave.
+     *
+     * @param mask tonal mask
+     * @return bit representation of the mask
+     */
+    public static int toBits(int[] mask) {
+        int result = 0;
+        for (int i : mask) {
+            result |= 1 << (i % 12);
+        }
+        return result;
+    }
+
+    /**
+     * Rotates a 12-bit pitch class set up by given number of semitones.
+     *
+     * @param bits pitch class set
+     * @param semitones number of semitones from 0 to 11
+     * @return transposed pitch class set
+     */
+    public static int rotate(int bits, int semitones) {
+        return ((bits << semitones) | (bits >>> (12 - semitones))) & 0xFFF;
+    }
+
     /**
      * Gets tonal mask of this scale.
      *
@@ -29,6 +57,15 @@ public class Scale {
         return mask;
     }
 
+    /**
+     * Gets tonal mask of this scale as a 12-bit pitch class set.
+     *
+     * @return bit representation of the mask, see {@link #toBits(int[])}
+     */
+    public int getBits() {
+        return bits;
+    }
+
     /**
      * Returns the name of this scale.
      * @return name of the scale
@@ -0,0 +1,126 @@
+package chordAnalyzer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Structure representing a group of {@link Scale}s which are modes of each other, i.e. their tonal masks are rotations of the same set of tones.
+ * For example the major scale and the natural minor scale belong to the same class, because A minor consists of the same tones as C major.
+ * <br/>
+ * Accuracy of a scale depends only on its tones, so the whole class can be scored once for each of the twelve roots and the result applies to all
+ * its members. A member with an offset <code>d</code> has the same tones as the first member of the class (the representative) shifted
+ * <code>d</code> semitones, that is the representative beginning at a root <code>r</code> has the same tones as the member beginning at
+ * <code>r + d</code>.
+ */
+public class ScaleClass {
+
+    private int bits;
+    private int period;
+    private List<Scale> members = new ArrayList<>();
+    private List<Integer> offsets = new ArrayList<>();
+
+    private ScaleClass(Scale representative) {
+        this.bits = representative.getBits();
+        //the smallest transposition mapping the tones onto themselves, 12 for scales which are not symmetric
+        period = 1;
+        while (period < 12 && Scale.rotate(bits, period) != bits) {
+            period++;
+        }
+        add(representative, 0);
+    }
+
+    private void add(Scale scale, int offset) {
+        members.add(scale);
+        offsets.add(offset);
+    }
+
+    /**
+     * Divides scales into classes of modes. Classes and members in each class keep the order of the input list.
+     *
+     * @param scales list of scales, usually loaded from the file <code>scales</code>
+     * @return list of classes of modes
+     */
+    public static List<ScaleClass> group(List<Scale> scales) {
+        List<ScaleClass> result = new ArrayList<>();
+        for (Scale s : scales) {
+            ScaleClass found = null;
+            int offset = 0;
+            for (ScaleClass sc : result) {
+                offset = sc.offsetOf(s.getBits());
+                if (offset >= 0) {
+                    found = sc;
+                    break;
+                }
+            }
+            if (found == null) {
+                result.add(new ScaleClass(s));
+            } else {
+                found.add(s, offset);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Finds the smallest rotation which maps given tonal mask onto the representative of this class.
+     *
+     * @param memberBits tonal mask as a 12-bit pitch class set
+     * @return number of semitones from 0 to 11, or -1 if the mask does not belong to this class
+     */
+    private int offsetOf(int memberBits) {
+        for (int d = 0; d < 12; d++) {
+            if (Scale.rotate(memberBits, d) == bits) {
+                return d;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Gets tonal mask of the representative of this class.
+     *
+     * @return bit representation of the mask, see {@link Scale#toBits(int[])}
+     */
+    public int getBits() {
+        return bits;
+    }
+
+    /**
+     * Gets the period of the tones of this class. Symmetric scales (e.g. the whole tone scale) consist of the same tones on roots differing
+     * by the period, so they need to be checked only on roots below it.
+     *
+     * @return number of semitones from 1 to 12, a divisor of 12
+     */
+    public int getPeriod() {
+        return period;
+    }
+
+    /**
+     * Gets number of scales in this class.
+     *
+     * @return number of members
+     */
+    public int size() {
+        return members.size();
+    }
+
+    /**
+     * Gets a member of this class.
+     *
+     * @param i index of the member, the representative has index 0
+     * @return member scale
+     */
+    public Scale getMember(int i) {
+        return members.get(i);
+    }
+
+    /**
+     * Gets the offset of a member of this class.
+     *
+     * @param i index of the member
+     * @return number of semitones to add to a root of the representative to get the root of the member with the same tones
+     */
+    public int getOffset(int i) {
+        return offsets.get(i);
+    }
+}
@@ -0,0 +1,136 @@
+package chordAnalyzer;
+
+import java.util.Collections;
+
+/**
+ * Texts displayed in the details view of a scale: its tones, mask, intervals, set class and suitable chords with their best guitar voicings.
+ * They are computed at once, so that they can be prepared in the background by {@link DetailsPrefetcher} and only set into the labels when
+ * the scale is selected.
+ */
+public class ScaleDetails {
+
+    private final String tones;
+    private final String mask;
+    private final String intervals;
+    private final String setClass;
+    private final Chord[][] chords;
+    private final String[] chordTexts;
+    private final String[] voicingTexts;
+
+    /**
+     * Constructor. Computes all the texts, may be called from any thread.
+     *
+     * @param wscale scale to be displayed
+     * @param voicings guitar voicings used for the tooltips of the chords
+     * @param shown number of voicings shown for each chord
+     */
+    public ScaleDetails(WeightedScale wscale, GuitarVoicings voicings, int shown) {
+        StringBuilder sbTones = new StringBuilder();
+        for (Tone t : wscale.getTones()) {
+            sbTones.append(t.toString()).append(" ");
+        }
+        tones = sbTones.substring(0, sbTones.length() - 1); //removing the last space
+
+        //mask, intervals and set class do not depend on the root and are precomputed in the index
+        SetClassIndex setClasses = ChordAnalyzer.getSetClassIndex();
+        int bits = wscale.getBits();
+        if (!setClasses.contains(bits)) {
+            //the scale was removed from the file scales after it was found, its properties are computed alone
+            setClasses = new SetClassIndex(Collections.<Scale>singletonList(wscale), new int[0]);
+        }
+        mask = setClasses.getMaskText(bits);
+        intervals = setClasses.getStepsText(bits);
+        StringBuilder sbSetClass = new StringBuilder(setClasses.getPrimeFormText(bits));
+        sbSetClass.append("   vektor <");
+        for (int ic : setClasses.getIntervalVector(bits)) {
+            sbSetClass.append(ic);
+        }
+        sbSetClass.append(">   symetrie ").append(setClasses.getSymmetry(bits));
+        setClass = sbSetClass.toString();
+
+        //suitable chords are divided into multiple lines, one for each root tone
+        chords = ChordAnalyzer.findSuitableChords(wscale);
+        chordTexts = new String[chords.length];
+        voicingTexts = new String[chords.length];
+        for (int i = 0; i < chords.length; i++) {
+            StringBuilder sbChords = new StringBuilder();
+            //tooltip with the best guitar voicings of the chords
+            StringBuilder sbVoicings = new StringBuilder("<html>");
+            for (Chord crd : chords[i]) {
+                sbChords.append(crd.getRoot().toString()).append(crd.getName()).append(", ");
+                sbVoicings.append(crd.getRoot().toString()).append(crd.getName()).append(":");
+                for (int[] voicing : voicings.find(crd, shown)) {
+                    sbVoicings.append(" ").append(GuitarVoicings.format(voicing));
+                }
+                sbVoicings.append("<br/>");
+            }
+            chordTexts[i] = sbChords.substring(0, sbChords.length() - 2); //removing the last comma
+            voicingTexts[i] = sbVoicings.append("</html>").toString();
+        }
+    }
+
+    /**
+     * Gets tones of the scale separated by spaces.
+     *
+     * @return text of the tones
+     */
+    public String getTones() {
+        return tones;
+    }
+
+    /**
+     * Gets tonal mask of the scale.
+     *
+     * @return text of the mask, see <code>SetClassIndex.getMaskText</code>
+     */
+    public String getMask() {
+        return mask;
+    }
+
+    /**
+     * Gets intervals between consecutive tones of the scale.
+     *
+     * @return text of the intervals, see <code>SetClassIndex.getStepsText</code>
+     */
+    public String getIntervals() {
+        return intervals;
+    }
+
+    /**
+     * Gets prime form, interval vector and symmetry of the scale.
+     *
+     * @return text of the set class
+     */
+    public String getSetClass() {
+        return setClass;
+    }
+
+    /**
+     * Gets suitable chords of the scale.
+     *
+     * @return result of <code>findSuitableChords</code>, shared and must not be modified
+     */
+    public Chord[][] getChords() {
+        return chords;
+    }
+
+    /**
+     * Gets suitable chords derived from one root tone, separated by commas.
+     *
+     * @param i index of the root tone in <code>getChords</code>
+     * @return text of the chords
+     */
+    public String getChordText(int i) {
+        return chordTexts[i];
+    }
+
+    /**
+     * Gets the best guitar voicings of the chords derived from one root tone, as an HTML tooltip.
+     *
+     * @param i index of the root tone in <code>getChords</code>
+     * @return text of the voicings
+     */
+    public String getVoicingText(int i) {
+        return voicingTexts[i];
+    }
+}
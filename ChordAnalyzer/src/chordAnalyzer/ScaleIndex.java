@@ -0,0 +1,165 @@
+package chordAnalyzer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Index of sets of tones for finding the scales nearest to given chords, used when no scale fits the chords well enough. The distance of a scale
+ * from the weights of tones computed in <code>findScales</code> is a weighted symmetric difference: every tone of the chords missing in the scale
+ * costs its weight and every tone of the scale not present in the chords costs 1.
+ * <br/>
+ * Sets of tones are divided into buckets by their size (number of tones). For a bucket of size <code>k</code> the distance cannot be smaller
+ * than the cost of <code>k - n</code> extra tones if the chords have <code>n &lt; k</code> tones, or the cost of the <code>n - k</code> lightest
+ * tones of the chords otherwise. Buckets are searched in the order of this lower bound and the search stops as soon as the lower bound exceeds
+ * the distance of the worst scale found so far, so even an index of all 4096 sets of tones answers in microseconds.
+ */
+public class ScaleIndex {
+
+    private final int[][] bucketBits = new int[13][];
+    private final Scale[][] bucketScales = new Scale[13][];
+    private final Tone[][] bucketRoots = new Tone[13][];
+
+    /**
+     * Constructor. Indexes every class of modes on all twelve roots, each distinct set of tones is represented by the first scale of its class.
+     *
+     * @param classes known scales divided into classes of modes, see <code>ChordAnalyzer.getScaleClasses</code>
+     */
+    public ScaleIndex(List<ScaleClass> classes) {
+        List<List<Integer>> bits = new ArrayList<>();
+        List<List<Scale>> scales = new ArrayList<>();
+        List<List<Tone>> roots = new ArrayList<>();
+        for (int k = 0; k <= 12; k++) {
+            bits.add(new ArrayList<Integer>());
+            scales.add(new ArrayList<Scale>());
+            roots.add(new ArrayList<Tone>());
+        }
+        boolean[] seen = new boolean[1 << 12];
+        for (ScaleClass sc : classes) {
+            for (int root = 0; root < 12; root++) {
+                int tones = Scale.rotate(sc.getBits(), root);
+                if (!seen[tones]) {
+                    seen[tones] = true;
+                    int k = Integer.bitCount(tones);
+                    bits.get(k).add(tones);
+                    scales.get(k).add(sc.getMember(0));
+                    roots.get(k).add(Tone.fromSemitones(root));
+                }
+            }
+        }
+        for (int k = 0; k <= 12; k++) {
+            bucketBits[k] = new int[bits.get(k).size()];
+            for (int i = 0; i < bucketBits[k].length; i++) {
+                bucketBits[k][i] = bits.get(k).get(i);
+            }
+            bucketScales[k] = scales.get(k).toArray(new Scale[0]);
+            bucketRoots[k] = roots.get(k).toArray(new Tone[0]);
+        }
+    }
+
+    /**
+     * Computes the distance of a set of tones from weights of tones.
+     *
+     * @param weights weights of tones C to B
+     * @param tones 12-bit pitch class set
+     * @return weighted symmetric difference
+     */
+    public static int distance(int[] weights, int tones) {
+        int d = 0;
+        for (int i = 0; i < 12; i++) {
+            if ((tones & (1 << i)) == 0) {
+                d += weights[i];
+            } else if (weights[i] == 0) {
+                d++;
+            }
+        }
+        return d;
+    }
+
+    /**
+     * Finds scales nearest to given weights of tones.
+     *
+     * @param weights weights of tones C to B, as computed by <code>ChordAnalyzer.getWeights</code>
+     * @param n number of scales to be found
+     * @return at most <code>n</code> nearest scales, sorted by distance, with accuracy computed as in <code>findScales</code>, empty if
+     * <code>n</code> is not positive or all the weights are zero
+     */
+    public List<WeightedScale> nearest(int[] weights, int n) {
+        List<WeightedScale> result = new ArrayList<>();
+        int size = 0;
+        int sumWeights = 0;
+        int[] sorted = new int[12];
+        for (int i = 0; i < 12; i++) {
+            if (weights[i] > 0) {
+                sorted[size++] = weights[i];
+                sumWeights += weights[i];
+            }
+        }
+        //without any tones every scale is equally far, so none is the nearest
+        if (n <= 0 || sumWeights == 0) {
+            return result;
+        }
+        Arrays.sort(sorted, 0, size);
+
+        //lower bounds of distances in each bucket
+        int[] bound = new int[13];
+        Integer[] order = new Integer[13];
+        for (int k = 0; k <= 12; k++) {
+            order[k] = k;
+            if (k >= size) {
+                bound[k] = k - size;
+            } else {
+                for (int i = 0; i < size - k; i++) {
+                    bound[k] += sorted[i];
+                }
+            }
+        }
+        final int[] b = bound;
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer x, Integer y) {
+                return b[x] - b[y];
+            }
+        });
+
+        //the n best sets found so far, sorted by distance
+        int[] bestDistance = new int[n];
+        int[] bestBucket = new int[n];
+        int[] bestIndex = new int[n];
+        int found = 0;
+        for (int k : order) {
+            if (found == n && bound[k] > bestDistance[n - 1]) {
+                break;
+            }
+            for (int i = 0; i < bucketBits[k].length; i++) {
+                int d = distance(weights, bucketBits[k][i]);
+                if (found < n || d < bestDistance[found - 1]) {
+                    int pos = found < n ? found++ : n - 1;
+                    while (pos > 0 && bestDistance[pos - 1] > d) {
+                        bestDistance[pos] = bestDistance[pos - 1];
+                        bestBucket[pos] = bestBucket[pos - 1];
+                        bestIndex[pos] = bestIndex[pos - 1];
+                        pos--;
+                    }
+                    bestDistance[pos] = d;
+                    bestBucket[pos] = k;
+                    bestIndex[pos] = i;
+                }
+            }
+        }
+
+        for (int j = 0; j < found; j++) {
+            int tones = bucketBits[bestBucket[j]][bestIndex[j]];
+            int hits = 0;
+            for (int i = 0; i < 12; i++) {
+                if ((tones & (1 << i)) != 0) {
+                    hits += weights[i];
+                }
+            }
+            double accuracy = (double) hits / sumWeights;
+            result.add(new WeightedScale(bucketScales[bestBucket[j]][bestIndex[j]], bucketRoots[bestBucket[j]][bestIndex[j]], accuracy));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,154 @@
+package chordAnalyzer;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Generator of playable positions (fingering patterns) of scales on a guitar neck. A position begins with one of the tones of the scale on the
+ * lowest string and continues upwards through the scale, taking a fixed number of tones on each string: three for scales with six or more
+ * tones (the common three-notes-per-string patterns) and two for smaller scales such as pentatonics. A scale has therefore as many positions
+ * as tones.
+ * <br/>
+ * Positions depend only on the tonal mask of the scale and the tuning, the root only moves the whole pattern along the neck. Positions are
+ * therefore computed once for each mask with the root C, for other roots they are just shifted by the required number of frets. Both are cached,
+ * so displaying a scale again never computes its positions.
+ * <br/>
+ * A position is represented as a two-dimensional array of frets, indexed by string in the order of the tuning and by the tone on the string.
+ */
+public class ScalePositions {
+
+    /**
+     * Sorts positions by the lowest fret.
+     */
+    private static final Comparator<int[][]> BY_FRET = new Comparator<int[][]>() {
+        @Override
+        public int compare(int[][] a, int[][] b) {
+            return lowestFret(a) - lowestFret(b);
+        }
+    };
+
+    private final Tone[] strings;
+    //pitch of each open string relative to the lowest one, in semitones
+    private final int[] openPitch;
+    //positions with the root C indexed by the mask, and positions for specific roots indexed by the mask times 12 plus the root
+    private final Map<Integer, int[][][]> shapes = new HashMap<>();
+    private final Map<Integer, int[][][]> cache = new HashMap<>();
+
+    /**
+     * Constructor.
+     *
+     * @param tuning tuning of the guitar
+     */
+    public ScalePositions(Tuning tuning) {
+        this.strings = tuning.getStrings();
+        openPitch = new int[strings.length];
+        for (int j = strings.length - 2; j >= 0; j--) {
+            int interval = (strings[j].ordinal() - strings[j + 1].ordinal() + 12) % 12;
+            openPitch[j] = openPitch[j + 1] + (interval == 0 ? 12 : interval);
+        }
+    }
+
+    /**
+     * Gets all positions of a scale.
+     *
+     * @param bits tonal mask of the scale as a 12-bit pitch class set
+     * @param root root of the scale
+     * @return positions of the scale, one for each tone of the scale, sorted by the lowest fret; the arrays are shared and must not be
+     * modified
+     */
+    public synchronized int[][][] getPositions(int bits, Tone root) {
+        int key = bits * 12 + root.ordinal();
+        int[][][] result = cache.get(key);
+        if (result == null) {
+            int[][][] positions = shapes.get(bits);
+            if (positions == null) {
+                positions = computePositions(bits);
+                shapes.put(bits, positions);
+            }
+            result = new int[positions.length][][];
+            for (int p = 0; p < positions.length; p++) {
+                result[p] = shift(positions[p], root.ordinal());
+            }
+            Arrays.sort(result, BY_FRET);
+            cache.put(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * Computes positions of a scale with the root C.
+     */
+    private int[][][] computePositions(int bits) {
+        int size = Integer.bitCount(bits);
+        int perString = size >= 6 ? 3 : 2;
+        int[][][] positions = new int[size][][];
+        int lowest = strings.length - 1;
+        int p = 0;
+        //positions are started from each tone of the scale on the lowest string, in the order of frets
+        for (int start = 0; start < 12; start++) {
+            if ((bits & (1 << ((strings[lowest].ordinal() + start) % 12))) == 0) {
+                continue;
+            }
+            int[][] position = new int[strings.length][perString];
+            int pitch = start;
+            for (int j = lowest; j >= 0; j--) {
+                for (int k = 0; k < perString; k++) {
+                    position[j][k] = pitch - openPitch[j];
+                    pitch = nextTone(bits, pitch);
+                }
+            }
+            positions[p++] = position;
+        }
+        return positions;
+    }
+
+    /**
+     * Finds the next higher tone of the scale.
+     *
+     * @param bits tonal mask of the scale with the root C
+     * @param pitch pitch relative to the lowest open string
+     * @return the next higher pitch belonging to the scale
+     */
+    private int nextTone(int bits, int pitch) {
+        int lowestTone = strings[strings.length - 1].ordinal();
+        do {
+            pitch++;
+        } while ((bits & (1 << ((lowestTone + pitch) % 12))) == 0);
+        return pitch;
+    }
+
+    /**
+     * Moves a position by given number of frets, and then by octaves so that it lies on the neck as low as possible.
+     */
+    private static int[][] shift(int[][] position, int shift) {
+        int min = lowestFret(position) + shift;
+        //the lowest fret of the position is brought into the first octave of the neck
+        int octaves = min >= 0 ? -(min / 12) : (11 - min) / 12;
+        int[][] result = new int[position.length][];
+        for (int j = 0; j < position.length; j++) {
+            result[j] = new int[position[j].length];
+            for (int k = 0; k < position[j].length; k++) {
+                result[j][k] = position[j][k] + shift + 12 * octaves;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Finds the lowest fret used by a position.
+     *
+     * @param position position of a scale
+     * @return the lowest fret
+     */
+    public static int lowestFret(int[][] position) {
+        int min = Integer.MAX_VALUE;
+        for (int[] string : position) {
+            for (int f : string) {
+                min = Math.min(min, f);
+            }
+        }
+        return min;
+    }
+}
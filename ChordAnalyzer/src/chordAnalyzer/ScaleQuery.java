@@ -0,0 +1,168 @@
+package chordAnalyzer;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Query engine searching the known scales on all twelve roots by their tones, for example all scales containing C, E and G# but not F, with six
+ * or seven tones. A query is given by two 12-bit pitch class sets, the tones which must be included and the tones which must be excluded, and by
+ * the range of the number of tones.
+ * <br/>
+ * Tones of every class of modes (see {@link ScaleClass}) on every root are computed once in the constructor, so a query needs just two bit tests
+ * for each class and root, and whole classes of a wrong size are skipped. Results are not collected into a list, they are produced lazily
+ * while iterating, so the first results are available immediately and iteration can be stopped at any time.
+ */
+public class ScaleQuery {
+
+    private final List<ScaleClass> classes;
+    //tones of each class on each root, indexed by class and root
+    private final int[][] rotations;
+    private final int[] sizes;
+
+    /**
+     * Constructor. Precomputes tones of all classes on all roots.
+     *
+     * @param classes known scales divided into classes of modes, see <code>ChordAnalyzer.getScaleClasses</code>
+     */
+    public ScaleQuery(List<ScaleClass> classes) {
+        this.classes = classes;
+        rotations = new int[classes.size()][12];
+        sizes = new int[classes.size()];
+        for (int i = 0; i < classes.size(); i++) {
+            int bits = classes.get(i).getBits();
+            sizes[i] = Integer.bitCount(bits);
+            for (int root = 0; root < 12; root++) {
+                rotations[i][root] = Scale.rotate(bits, root);
+            }
+        }
+    }
+
+    /**
+     * Finds scales by their tones. Every returned scale has the accuracy 1, which is not a rating against any chords and is not displayed.
+     *
+     * @param include 12-bit pitch class set of tones which must be in the scale
+     * @param exclude 12-bit pitch class set of tones which must not be in the scale
+     * @param minSize minimal number of tones of the scale
+     * @param maxSize maximal number of tones of the scale
+     * @return lazily evaluated scales, in the order of the file <code>scales</code> and roots
+     */
+    public Iterable<WeightedScale> query(final int include, final int exclude, final int minSize, final int maxSize) {
+        return new Iterable<WeightedScale>() {
+            @Override
+            public Iterator<WeightedScale> iterator() {
+                return new Results(include, exclude, minSize, maxSize);
+            }
+        };
+    }
+
+    /**
+     * Finds scales by a textual query. The query consists of words separated by spaces or commas: a tone (for example <code>G#</code>
+     * or <code>Ab</code>) must be included, a tone preceded by <code>-</code> or <code>!</code> must be excluded, and a number
+     * (<code>7</code>) or a range (<code>6-7</code>) limits the number of tones. For example <code>C E G# -F 6-7</code>.
+     *
+     * @param text query
+     * @return lazily evaluated scales, see <code>query(int, int, int, int)</code>
+     * @throws IllegalArgumentException if some of the words is not understood
+     */
+    public Iterable<WeightedScale> query(CharSequence text) {
+        int include = 0;
+        int exclude = 0;
+        int minSize = 0;
+        int maxSize = 12;
+        for (String word : text.toString().trim().split("[\\s,]+")) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            if (Character.isDigit(word.charAt(0))) {
+                String[] range = word.split("-", 2);
+                try {
+                    minSize = Integer.parseInt(range[0]);
+                    maxSize = range.length > 1 ? Integer.parseInt(range[1]) : minSize;
+                } catch (NumberFormatException ex) {
+                    throw new IllegalArgumentException(word);
+                }
+                continue;
+            }
+            boolean excluded = word.charAt(0) == '-' || word.charAt(0) == '!';
+            int tone = ChordParser.parseTone(excluded ? word.substring(1) : word);
+            if (tone == -1) {
+                throw new IllegalArgumentException(word);
+            }
+            if (excluded) {
+                exclude |= 1 << tone;
+            } else {
+                include |= 1 << tone;
+            }
+        }
+        return query(include, exclude, minSize, maxSize);
+    }
+
+    /**
+     * Iterator over classes, roots and members of classes, which finds the next result only when it is asked for.
+     */
+    private class Results implements Iterator<WeightedScale> {
+
+        private final int include;
+        private final int exclude;
+        private final int minSize;
+        private final int maxSize;
+        //position of the next result: class, root and member of the class; member is -1 if the next result was not found yet
+        private int c = 0;
+        private int root = -1;
+        private int member = -1;
+
+        Results(int include, int exclude, int minSize, int maxSize) {
+            this.include = include;
+            this.exclude = exclude;
+            this.minSize = minSize;
+            this.maxSize = maxSize;
+        }
+
+        /**
+         * Moves to the next class and root matching the query, if the members of the current one are exhausted.
+         */
+        private void advance() {
+            if (member >= 0) {
+                return;
+            }
+            while (c < rotations.length) {
+                if (sizes[c] >= minSize && sizes[c] <= maxSize) {
+                    while (++root < 12) {
+                        int tones = rotations[c][root];
+                        if ((tones & include) == include && (tones & exclude) == 0) {
+                            member = 0;
+                            return;
+                        }
+                    }
+                }
+                c++;
+                root = -1;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            advance();
+            return member >= 0;
+        }
+
+        @Override
+        public WeightedScale next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            ScaleClass sc = classes.get(c);
+            WeightedScale result = new WeightedScale(sc.getMember(member), Tone.fromSemitones(root + sc.getOffset(member)), 1);
+            if (++member == sc.size()) {
+                member = -1;
+            }
+            return result;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
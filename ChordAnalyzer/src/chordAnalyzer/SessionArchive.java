@@ -0,0 +1,275 @@
+package chordAnalyzer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary file of analysis sessions: the entered chords, the found scales with their accuracy and the selected scale. Results are stored,
+ * so a session is displayed again without any analysis. A file may hold any number of sessions, it is read into memory at once and a session
+ * is decoded only when it is requested, so even archives of thousands of sessions open immediately. Unlike {@link CatalogFile} the file is not
+ * mapped, because a mapped file cannot be replaced on some systems and sessions are appended by replacing the archive.
+ * <br/>
+ * Chords and scales are stored as indices into the catalogs <code>chords</code> and <code>scales</code>, therefore the file records the hash
+ * of the catalogs (see <code>CompatibilityMatrix.hash</code>) and cannot be opened with other catalogs. The file consists of:
+ * <ol>
+ * <li>header: magic number <code>CHSE</code>, format version (int), hash of the catalogs (long), number of sessions (int)</li>
+ * <li>offsets of the sessions from the beginning of the file (int), and the offset of the end of the last session</li>
+ * <li>sessions: number of chords (short), each chord as its root and its type (two bytes), number of results (short), each result as a
+ * packed triple of the index of the scale (13 bits), its root (4 bits) and its accuracy in percent (7 bits) in three bytes, index of the
+ * selected result (short, -1 if none)</li>
+ * </ol>
+ * A session without chords holds the result of a query of scales by tones, whose accuracy is not a rating and is not displayed.
+ */
+public class SessionArchive {
+
+    private static final int MAGIC = 0x43485345;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 20;
+    private static final int MAX_SCALES = 1 << 13;
+    private static final int MAX_CHORD_TYPES = 1 << 8;
+
+    /**
+     * One analysis session.
+     */
+    public static class Session {
+
+        private final Chord[] chords;
+        private final List<WeightedScale> results;
+        private final int selected;
+
+        /**
+         * Constructor.
+         *
+         * @param chords entered chords, of known types
+         * @param results found scales of the catalog, sorted as displayed
+         * @param selected index of the selected scale in the results, -1 if none
+         */
+        public Session(Chord[] chords, List<WeightedScale> results, int selected) {
+            this.chords = chords;
+            this.results = results;
+            this.selected = selected;
+        }
+
+        /**
+         * Gets the entered chords.
+         *
+         * @return shared {@link Chord} objects, see <code>ChordAnalyzer.getChord</code>
+         */
+        public Chord[] getChords() {
+            return chords;
+        }
+
+        /**
+         * Gets the found scales.
+         *
+         * @return scales with their accuracy
+         */
+        public List<WeightedScale> getResults() {
+            return results;
+        }
+
+        /**
+         * Gets the selected scale.
+         *
+         * @return index of the selected scale in the results, -1 if none
+         */
+        public int getSelected() {
+            return selected;
+        }
+    }
+
+    private final ByteBuffer buffer;
+    private final int size;
+    private final List<Scale> scales;
+
+    private SessionArchive(ByteBuffer buffer, List<Scale> scales) {
+        this.buffer = buffer;
+        this.size = buffer.getInt(16);
+        this.scales = scales;
+    }
+
+    /**
+     * Reads a session file into memory.
+     *
+     * @param file session file
+     * @param scales known scales, the same as when the file was written
+     * @param chordBits tonal masks of known chord types as 12-bit pitch class sets, the same as when the file was written
+     * @return opened archive
+     * @throws IOException if the file cannot be read, is not a session file or was written with other catalogs
+     */
+    public static SessionArchive open(File file, List<Scale> scales, int[] chordBits) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Not a session file.");
+            }
+            buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+                //reads until the whole file is in the buffer
+            }
+            buffer.clear();
+        }
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a session file.");
+        }
+        if (buffer.getLong(8) != CompatibilityMatrix.hash(scales, chordBits)) {
+            throw new IOException("Sessions were saved with other catalogs.");
+        }
+        int size = buffer.getInt(16);
+        if (size < 0 || HEADER_SIZE + (size + 1) * 4 > buffer.capacity() || buffer.getInt(HEADER_SIZE + size * 4) != buffer.capacity()) {
+            throw new IOException("Corrupted session file.");
+        }
+        return new SessionArchive(buffer, scales);
+    }
+
+    /**
+     * Gets number of sessions in the archive.
+     *
+     * @return number of sessions
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Decodes a session.
+     *
+     * @param i index of the session
+     * @return session
+     */
+    public Session get(int i) {
+        ByteBuffer b = buffer.duplicate();
+        b.position(buffer.getInt(HEADER_SIZE + i * 4));
+        Chord[] chords = readChords(b);
+        int count = b.getShort();
+        List<WeightedScale> results = new ArrayList<>(count);
+        for (int j = 0; j < count; j++) {
+            int packed = ((b.get() & 0xFF) << 16) | ((b.get() & 0xFF) << 8) | (b.get() & 0xFF);
+            int score = packed & 0x7F;
+            //half a percent keeps the accuracy from being rounded down when converted back to percent
+            results.add(new WeightedScale(scales.get(packed >>> 11), Tone.fromSemitones((packed >>> 7) & 0xF), (score + 0.5) / 100));
+        }
+        return new Session(chords, results, b.getShort());
+    }
+
+    /**
+     * Decodes only the chords of a session, e.g. for choosing among the sessions without decoding their results.
+     *
+     * @param i index of the session
+     * @return shared {@link Chord} objects, see <code>ChordAnalyzer.getChord</code>
+     */
+    public Chord[] getChords(int i) {
+        ByteBuffer b = buffer.duplicate();
+        b.position(buffer.getInt(HEADER_SIZE + i * 4));
+        return readChords(b);
+    }
+
+    private static Chord[] readChords(ByteBuffer b) {
+        Chord[] chords = new Chord[b.getShort()];
+        for (int j = 0; j < chords.length; j++) {
+            Tone root = Tone.fromSemitones(b.get());
+            chords[j] = ChordAnalyzer.getChord(root, b.get() & 0xFF);
+        }
+        return chords;
+    }
+
+    /**
+     * Gets all the sessions of the archive.
+     *
+     * @return decoded sessions
+     */
+    public List<Session> getAll() {
+        List<Session> result = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            result.add(get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Writes sessions to a file.
+     *
+     * @param sessions sessions to be written
+     * @param file file to be written
+     * @param scales known scales, the results must be constructed from the scales of this list (see <code>WeightedScale.getScale</code>)
+     * @param chordBits tonal masks of known chord types as 12-bit pitch class sets, in the order of the file <code>chords</code>
+     * @throws IOException if the file cannot be written, or the sessions cannot be stored
+     */
+    public static void write(List<Session> sessions, File file, List<Scale> scales, int[] chordBits) throws IOException {
+        if (scales.size() > MAX_SCALES) {
+            throw new IOException("Too many scales for a session file.");
+        }
+        if (chordBits.length > MAX_CHORD_TYPES) {
+            throw new IOException("Too many chord types for a session file.");
+        }
+        //scales of the results are the objects of the catalog, so even scales with the same name and tones are told apart
+        Map<Scale, Integer> scaleIndex = new IdentityHashMap<>();
+        for (int i = 0; i < scales.size(); i++) {
+            scaleIndex.put(scales.get(i), i);
+        }
+        Map<String, Integer> chordType = new HashMap<>();
+        for (int type = 0; type < chordBits.length; type++) {
+            chordType.put(ChordAnalyzer.getChord(Tone.C, type).getName(), type);
+        }
+
+        int length = HEADER_SIZE + (sessions.size() + 1) * 4;
+        for (Session s : sessions) {
+            length += 2 + 2 * s.chords.length + 2 + 3 * s.results.size() + 2;
+        }
+        ByteBuffer out = ByteBuffer.allocate(length);
+        out.putInt(MAGIC).putInt(VERSION).putLong(CompatibilityMatrix.hash(scales, chordBits)).putInt(sessions.size());
+        int offset = HEADER_SIZE + (sessions.size() + 1) * 4;
+        for (Session s : sessions) {
+            out.putInt(offset);
+            offset += 2 + 2 * s.chords.length + 2 + 3 * s.results.size() + 2;
+        }
+        out.putInt(offset);
+        for (Session s : sessions) {
+            if (s.chords.length > Short.MAX_VALUE || s.results.size() > Short.MAX_VALUE) {
+                throw new IOException("Session too large.");
+            }
+            out.putShort((short) s.chords.length);
+            for (Chord chord : s.chords) {
+                Integer type = chordType.get(chord.getName());
+                if (type == null) {
+                    throw new IOException("Unknown chord " + chord.getRoot() + chord.getName());
+                }
+                out.put((byte) chord.getRoot().ordinal()).put((byte) (int) type);
+            }
+            out.putShort((short) s.results.size());
+            for (WeightedScale w : s.results) {
+                Integer index = scaleIndex.get(w.getScale());
+                if (index == null) {
+                    throw new IOException("Unknown scale " + w);
+                }
+                int packed = (index << 11) | (w.getRoot().ordinal() << 7) | Math.max(0, Math.min(100, w.getAccuracy()));
+                out.put((byte) (packed >>> 16)).put((byte) (packed >>> 8)).put((byte) packed);
+            }
+            out.putShort((short) s.selected);
+        }
+        out.flip();
+
+        //written to a temporary file first and moved over the archive at once, so that an archive being extended is never lost
+        File tmp = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+        try {
+            try (FileChannel channel = FileChannel.open(tmp.toPath(), StandardOpenOption.WRITE)) {
+                while (out.hasRemaining()) {
+                    channel.write(out);
+                }
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            tmp.delete();
+        }
+    }
+}
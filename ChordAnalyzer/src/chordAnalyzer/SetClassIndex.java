@@ -0,0 +1,236 @@
+package chordAnalyzer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Index of set-class properties of all tonal masks from the files <code>scales</code> and <code>chords</code>, computed once when the catalogs
+ * are loaded:
+ * <ul>
+ * <li>prime form - the most compact transposition or inversion of the mask beginning at 0, i.e. the one with the smallest 12-bit pitch class
+ * set; masks with the same prime form belong to the same set class,</li>
+ * <li>interval vector - numbers of pairs of tones at each interval class from a semitone (1) to a tritone (6),</li>
+ * <li>symmetry - number of transpositions (including the identity) which map the mask onto itself, 1 for most scales, 6 for the whole-tone
+ * scale.</li>
+ * </ul>
+ * Properties are stored in arrays indexed by the 12-bit pitch class set of the mask (see <code>Scale.getBits</code>), so reading them is a
+ * single array access. Texts of the mask and the intervals between consecutive tones displayed in the details of a scale are kept as well.
+ */
+public class SetClassIndex {
+
+    private final List<Scale> scales;
+    private final int[] chordBits;
+    //properties indexed by the pitch class set, the interval vector is packed by 4 bits per interval class
+    private final short[] primeForm = new short[1 << 12];
+    private final int[] intervalVector = new int[1 << 12];
+    private final byte[] symmetry = new byte[1 << 12];
+    private final String[] maskText = new String[1 << 12];
+    private final String[] stepsText = new String[1 << 12];
+    private final String[] primeText = new String[1 << 12];
+
+    /**
+     * Constructor. Computes properties of all the scales and chord types.
+     *
+     * @param scales known scales, usually loaded from the file <code>scales</code>
+     * @param chordBits tonal masks of known chord types as 12-bit pitch class sets, in the order of the file <code>chords</code>
+     */
+    public SetClassIndex(List<Scale> scales, int[] chordBits) {
+        this.scales = scales;
+        this.chordBits = chordBits.clone();
+        for (Scale s : scales) {
+            add(s.getBits());
+        }
+        for (int bits : chordBits) {
+            add(bits);
+        }
+    }
+
+    private void add(int bits) {
+        if (symmetry[bits] != 0) {
+            return;
+        }
+        int prime = Integer.MAX_VALUE;
+        int inversion = invert(bits);
+        for (int t = 0; t < 12; t++) {
+            int r = Scale.rotate(bits, t);
+            if (r == bits) {
+                symmetry[bits]++;
+            }
+            if ((r & 1) != 0) {
+                prime = Math.min(prime, r);
+            }
+            r = Scale.rotate(inversion, t);
+            if ((r & 1) != 0) {
+                prime = Math.min(prime, r);
+            }
+        }
+        primeForm[bits] = (short) (bits == 0 ? 0 : prime);
+        StringBuilder sbPrime = new StringBuilder("(");
+        for (int i = 0; i < 12; i++) {
+            if ((primeForm[bits] & (1 << i)) != 0) {
+                sbPrime.append(sbPrime.length() > 1 ? "," : "").append(i);
+            }
+        }
+        primeText[bits] = sbPrime.append(")").toString();
+
+        int vector = 0;
+        for (int i = 0; i < 12; i++) {
+            for (int j = i + 1; j < 12; j++) {
+                if ((bits & (1 << i)) != 0 && (bits & (1 << j)) != 0) {
+                    int ic = Math.min(j - i, 12 - (j - i));
+                    vector += 1 << (4 * (ic - 1));
+                }
+            }
+        }
+        intervalVector[bits] = vector;
+
+        StringBuilder sbMask = new StringBuilder();
+        StringBuilder sbSteps = new StringBuilder();
+        int last = 0;
+        for (int i = 0; i < 12; i++) {
+            if ((bits & (1 << i)) != 0) {
+                if (sbMask.length() > 0) {
+                    sbMask.append(" - ");
+                    sbSteps.append(" - ");
+                }
+                sbMask.append(i);
+                sbSteps.append(i - last);
+                last = i;
+            }
+        }
+        maskText[bits] = sbMask.toString();
+        stepsText[bits] = sbSteps.toString();
+    }
+
+    /**
+     * Inverts a pitch class set around C.
+     */
+    private static int invert(int bits) {
+        int result = 0;
+        for (int i = 0; i < 12; i++) {
+            if ((bits & (1 << i)) != 0) {
+                result |= 1 << ((12 - i) % 12);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Checks whether a mask is in the index.
+     *
+     * @param bits tonal mask as a 12-bit pitch class set
+     * @return <code>true</code> if the mask belongs to a known scale or chord type
+     */
+    public boolean contains(int bits) {
+        return symmetry[bits] != 0;
+    }
+
+    /**
+     * Gets the prime form of a mask.
+     *
+     * @param bits tonal mask of a known scale or chord type as a 12-bit pitch class set
+     * @return prime form as a 12-bit pitch class set
+     */
+    public int getPrimeForm(int bits) {
+        return primeForm[bits];
+    }
+
+    /**
+     * Gets the interval vector of a mask.
+     *
+     * @param bits tonal mask of a known scale or chord type as a 12-bit pitch class set
+     * @return numbers of pairs of tones at interval classes 1 to 6
+     */
+    public int[] getIntervalVector(int bits) {
+        int[] result = new int[6];
+        for (int ic = 0; ic < 6; ic++) {
+            result[ic] = (intervalVector[bits] >> (4 * ic)) & 15;
+        }
+        return result;
+    }
+
+    /**
+     * Gets the number of transpositions mapping a mask onto itself. Such a mask has only <code>12 / getSymmetry(bits)</code> distinct
+     * transpositions.
+     *
+     * @param bits tonal mask of a known scale or chord type as a 12-bit pitch class set
+     * @return symmetry of the mask, at least 1
+     */
+    public int getSymmetry(int bits) {
+        return symmetry[bits];
+    }
+
+    /**
+     * Gets the text of the prime form of a mask, for example <code>(0,2,4,7,9)</code> for the major pentatonic.
+     *
+     * @param bits tonal mask of a known scale or chord type as a 12-bit pitch class set
+     * @return text of the prime form
+     */
+    public String getPrimeFormText(int bits) {
+        return primeText[bits];
+    }
+
+    /**
+     * Gets the text of a mask, for example <code>0 - 2 - 4 - 5 - 7 - 9 - 11</code>.
+     *
+     * @param bits tonal mask of a known scale or chord type as a 12-bit pitch class set
+     * @return text of the mask
+     */
+    public String getMaskText(int bits) {
+        return maskText[bits];
+    }
+
+    /**
+     * Gets the text of intervals between consecutive tones of a mask, for example <code>0 - 2 - 2 - 1 - 2 - 2 - 2</code>.
+     *
+     * @param bits tonal mask of a known scale or chord type as a 12-bit pitch class set
+     * @return text of the intervals
+     */
+    public String getStepsText(int bits) {
+        return stepsText[bits];
+    }
+
+    /**
+     * Checks whether a mask contains at least given numbers of intervals.
+     */
+    private boolean hasIntervals(int bits, int[] min) {
+        for (int ic = 0; ic < 6; ic++) {
+            if (((intervalVector[bits] >> (4 * ic)) & 15) < min[ic]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds scales by their interval content.
+     *
+     * @param min minimal numbers of pairs of tones at interval classes 1 to 6
+     * @return scales containing at least the given numbers of intervals, in the order of the file <code>scales</code>
+     */
+    public List<Scale> findScales(int[] min) {
+        List<Scale> result = new ArrayList<>();
+        for (Scale s : scales) {
+            if (hasIntervals(s.getBits(), min)) {
+                result.add(s);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Finds chord types by their interval content.
+     *
+     * @param min minimal numbers of pairs of tones at interval classes 1 to 6
+     * @return indices of chord types containing at least the given numbers of intervals, in the order of the file <code>chords</code>
+     */
+    public List<Integer> findChordTypes(int[] min) {
+        List<Integer> result = new ArrayList<>();
+        for (int type = 0; type < chordBits.length; type++) {
+            if (hasIntervals(chordBits[type], min)) {
+                result.add(type);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,203 @@
+package chordAnalyzer;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Batch analysis of a corpus of chord progressions divided among several worker processes, so that large corpora are not limited by the
+ * memory and garbage collection of a single JVM. The corpus is a UTF-8 text file with one progression per line, chords separated by commas
+ * (<code>C, Ami, Dmi7, G7</code>).
+ * <br/>
+ * Each line is assigned to one of K shards by a hash of its text. Every shard is analyzed by a separate Java process started with the
+ * arguments <code>-shard</code> (see <code>ChordAnalyzer.main</code>), which reads the whole corpus, analyzes only its own lines and writes
+ * them to a partial result file. Lines are read in order, so every partial file is sorted by line number without any sorting in memory.
+ * Finally the partial files are merged by a streaming k-way merge into the report, which is therefore the same for any number of shards.
+ * <br/>
+ * A line of a partial file and of the report consists of the line number, the progression and the three best keys with their accuracy,
+ * separated by tabulators; unknown chords are reported instead of keys.
+ */
+public class ShardedBatchRunner {
+
+    /**
+     * Number of keys written to the report for each progression.
+     */
+    public static final int REPORTED_KEYS = 3;
+
+    private ShardedBatchRunner() {
+    }
+
+    /**
+     * Gets the shard of a line of the corpus.
+     *
+     * @param line text of the line
+     * @param shards number of shards
+     * @return shard from 0 to <code>shards - 1</code>
+     */
+    public static int shardOf(String line, int shards) {
+        return (line.hashCode() & Integer.MAX_VALUE) % shards;
+    }
+
+    /**
+     * Analyzes one shard of a corpus. Called in a worker process, the known chords must be loaded.
+     *
+     * @param corpus corpus file
+     * @param shard shard to be analyzed
+     * @param shards number of shards
+     * @param partial partial result file to be written
+     * @throws IOException if the corpus cannot be read or the partial file cannot be written
+     */
+    public static void runShard(File corpus, int shard, int shards, File partial) throws IOException {
+        ChordParser parser = ChordAnalyzer.getChordParser();
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(corpus), "UTF-8"));
+                Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(partial), "UTF-8"))) {
+            String line;
+            long number = 0;
+            while ((line = in.readLine()) != null) {
+                number++;
+                if (line.trim().isEmpty() || shardOf(line, shards) != shard) {
+                    continue;
+                }
+                StringBuilder sb = new StringBuilder();
+                sb.append(number).append('\t').append(line.trim());
+                try {
+                    List<Chord> chords = parser.parseProgression(line);
+                    List<WeightedScale> result = ChordAnalyzer.analyze(chords.toArray(new Chord[0]));
+                    for (int k = 0; k < REPORTED_KEYS && k < result.size(); k++) {
+                        sb.append('\t').append(result.get(k)).append(' ').append(result.get(k).getAccuracy()).append(" %");
+                    }
+                } catch (IllegalArgumentException ex) {
+                    sb.append("\tneznámý akord ").append(ex.getMessage());
+                }
+                out.write(sb.append('\n').toString());
+            }
+        }
+    }
+
+    /**
+     * Analyzes a corpus in worker processes and merges their results into a report. Workers are started with the same Java runtime, class
+     * path and working directory as this process.
+     *
+     * @param corpus corpus file
+     * @param report report file to be written
+     * @param shards number of worker processes
+     * @throws IOException if the number of worker processes is not positive, a worker cannot be started or fails, or a file cannot be
+     * read or written
+     */
+    public static void run(File corpus, File report, int shards) throws IOException {
+        if (shards < 1) {
+            throw new IOException("Invalid number of shards: " + shards);
+        }
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        String classPath = System.getProperty("java.class.path");
+        List<File> partials = new ArrayList<>();
+        List<Process> workers = new ArrayList<>();
+        try {
+            for (int i = 0; i < shards; i++) {
+                File partial = File.createTempFile("shard" + i + "-", ".tsv");
+                partial.deleteOnExit();
+                partials.add(partial);
+                ProcessBuilder pb = new ProcessBuilder(java, "-cp", classPath, ChordAnalyzer.class.getName(), "-shard",
+                        corpus.getAbsolutePath(), Integer.toString(i), Integer.toString(shards), partial.getAbsolutePath());
+                pb.redirectOutput(ProcessBuilder.Redirect.INHERIT);
+                pb.redirectError(ProcessBuilder.Redirect.INHERIT);
+                workers.add(pb.start());
+            }
+            for (int i = 0; i < shards; i++) {
+                if (workers.get(i).waitFor() != 0) {
+                    throw new IOException("Shard " + i + " failed.");
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException(ex);
+        } finally {
+            for (Process worker : workers) {
+                worker.destroy();
+            }
+        }
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(report), "UTF-8"))) {
+            merge(partials, out);
+        } finally {
+            for (File partial : partials) {
+                partial.delete();
+            }
+        }
+    }
+
+    /**
+     * Head line of one partial file during the merge.
+     */
+    private static class Head implements Comparable<Head> {
+
+        final BufferedReader reader;
+        String line;
+        long number;
+
+        Head(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        /**
+         * Reads the next line.
+         *
+         * @return <code>false</code> at the end of the file
+         */
+        boolean advance() throws IOException {
+            line = reader.readLine();
+            if (line == null) {
+                return false;
+            }
+            number = Long.parseLong(line.substring(0, line.indexOf('\t')));
+            return true;
+        }
+
+        @Override
+        public int compareTo(Head h) {
+            return Long.compare(number, h.number);
+        }
+    }
+
+    /**
+     * Merges partial result files sorted by line number into one sorted report. Only one line of each file is held in memory.
+     *
+     * @param partials partial result files
+     * @param out writer of the report
+     * @throws IOException if a file cannot be read or the report cannot be written
+     */
+    public static void merge(List<File> partials, Writer out) throws IOException {
+        List<BufferedReader> readers = new ArrayList<>();
+        try {
+            PriorityQueue<Head> heads = new PriorityQueue<>();
+            for (File partial : partials) {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(partial), "UTF-8"));
+                readers.add(reader);
+                Head head = new Head(reader);
+                if (head.advance()) {
+                    heads.add(head);
+                }
+            }
+            while (!heads.isEmpty()) {
+                Head head = heads.poll();
+                out.write(head.line);
+                out.write('\n');
+                if (head.advance()) {
+                    heads.add(head);
+                }
+            }
+        } finally {
+            for (BufferedReader reader : readers) {
+                reader.close();
+            }
+        }
+    }
+}
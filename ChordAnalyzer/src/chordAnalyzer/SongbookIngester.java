@@ -0,0 +1,297 @@
+package chordAnalyzer;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Analysis of a songbook, a directory of songs in the ChordPro format, where chords are written in square brackets inside the lyrics
+ * (<code>[Ami]Hello [F]world</code>) and directives in braces (<code>{title: Song}</code>).
+ * <br/>
+ * Every file is mapped into memory and read in a single pass, which collects the title and the chord symbols. Symbols are parsed by
+ * {@link ChordParser} directly from the mapped bytes, only symbols containing non-ASCII characters (such as <code>♯</code>) are decoded first.
+ * The bass of slash chords (<code>C/G</code>) is ignored. Songs are read and analyzed by <code>findScales</code> in a pool of worker threads,
+ * and a report with the best keys of each song is written in the order of the files.
+ */
+public class SongbookIngester {
+
+    /**
+     * Extensions of the files recognized as songs.
+     */
+    public static final String[] EXTENSIONS = new String[]{".cho", ".chordpro", ".chopro", ".crd", ".pro"};
+
+    /**
+     * Number of keys written to the report for each song.
+     */
+    public static final int REPORTED_KEYS = 3;
+
+    /**
+     * Chords and title read from a song file.
+     */
+    public static class Song {
+
+        private final Path path;
+        private String title;
+        private final List<Chord> chords = new ArrayList<>();
+        private int unknown = 0;
+
+        private Song(Path path) {
+            this.path = path;
+            this.title = path.getFileName().toString();
+        }
+
+        /**
+         * Gets the song file.
+         *
+         * @return path of the file
+         */
+        public Path getPath() {
+            return path;
+        }
+
+        /**
+         * Gets the title of the song given by the directive <code>title</code>, or the file name.
+         *
+         * @return title of the song
+         */
+        public String getTitle() {
+            return title;
+        }
+
+        /**
+         * Gets recognized chords in the order of the song.
+         *
+         * @return shared {@link Chord} objects, see <code>ChordAnalyzer.getChord</code>
+         */
+        public List<Chord> getChords() {
+            return chords;
+        }
+
+        /**
+         * Gets number of chord symbols which were not recognized.
+         *
+         * @return number of unknown symbols
+         */
+        public int getUnknown() {
+            return unknown;
+        }
+    }
+
+    /**
+     * View of a part of a byte buffer as characters, used for parsing ASCII chord symbols without decoding.
+     */
+    private static class AsciiSequence implements CharSequence {
+
+        private final ByteBuffer buffer;
+        private final int start;
+        private final int end;
+
+        AsciiSequence(ByteBuffer buffer, int start, int end) {
+            this.buffer = buffer;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public int length() {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) buffer.get(start + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            return new AsciiSequence(buffer, start + from, start + to);
+        }
+
+        @Override
+        public String toString() {
+            byte[] bytes = new byte[end - start];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = buffer.get(start + i);
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    private final ChordParser parser;
+
+    /**
+     * Constructor.
+     *
+     * @param parser parser of chord symbols, see <code>ChordAnalyzer.getChordParser</code>
+     */
+    public SongbookIngester(ChordParser parser) {
+        this.parser = parser;
+    }
+
+    /**
+     * Finds all song files in a directory and its subdirectories.
+     *
+     * @param directory songbook directory
+     * @return song files sorted by path
+     * @throws IOException if the directory cannot be read
+     */
+    public static List<Path> findSongs(Path directory) throws IOException {
+        final List<Path> result = new ArrayList<>();
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                String name = file.getFileName().toString().toLowerCase();
+                for (String extension : EXTENSIONS) {
+                    if (name.endsWith(extension)) {
+                        result.add(file);
+                        break;
+                    }
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        Collections.sort(result);
+        return result;
+    }
+
+    /**
+     * Reads title and chords of a song.
+     *
+     * @param file song file in the ChordPro format
+     * @return song
+     * @throws IOException if the file cannot be read
+     */
+    public Song read(Path file) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        Song song = new Song(file);
+        int size = buffer.limit();
+        int i = 0;
+        while (i < size) {
+            byte b = buffer.get(i++);
+            if (b != '[' && b != '{') {
+                continue;
+            }
+            //chord or directive continues up to the closing bracket on the same line
+            byte close = b == '[' ? (byte) ']' : (byte) '}';
+            int start = i;
+            boolean ascii = true;
+            while (i < size && buffer.get(i) != close && buffer.get(i) != '\n') {
+                ascii &= buffer.get(i) >= 0;
+                i++;
+            }
+            if (i == size || buffer.get(i) != close) {
+                continue;
+            }
+            int end = i++;
+            if (b == '{') {
+                directive(song, new AsciiSequence(buffer, start, end).toString());
+            } else {
+                chord(song, ascii ? new AsciiSequence(buffer, start, end) : new AsciiSequence(buffer, start, end).toString());
+            }
+        }
+        return song;
+    }
+
+    private static void directive(Song song, String directive) {
+        int colon = directive.indexOf(':');
+        if (colon > 0) {
+            String name = directive.substring(0, colon).trim().toLowerCase();
+            if (name.equals("title") || name.equals("t")) {
+                song.title = directive.substring(colon + 1).trim();
+            }
+        }
+    }
+
+    private void chord(Song song, CharSequence symbol) {
+        int end = symbol.length();
+        for (int j = 0; j < symbol.length(); j++) {
+            if (symbol.charAt(j) == '/') {
+                end = j;
+                break;
+            }
+        }
+        int parsed = parser.parse(symbol, 0, end);
+        if (parsed == -1) {
+            song.unknown++;
+        } else {
+            song.chords.add(ChordAnalyzer.getChord(ChordParser.getRoot(parsed), ChordParser.getType(parsed)));
+        }
+    }
+
+    /**
+     * Reads and analyzes all songs of a songbook in parallel and writes a report. Each line of the report describes one song, in the order of
+     * the paths: the path, the title, the number of recognized and unknown chords and the best keys with their accuracy, separated by
+     * tabulators. The last line gives the throughput.
+     *
+     * @param directory songbook directory
+     * @param report writer of the report
+     * @param threads number of worker threads
+     * @return throughput in songs per second
+     * @throws IOException if a song cannot be read or the report cannot be written
+     */
+    public double ingest(Path directory, Writer report, int threads) throws IOException {
+        long start = System.nanoTime();
+        List<Path> files = findSongs(directory);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<String>> futures = new ArrayList<>();
+            for (final Path file : files) {
+                futures.add(executor.submit(new Callable<String>() {
+                    @Override
+                    public String call() throws IOException {
+                        return analyze(read(file));
+                    }
+                }));
+            }
+            report.write("#soubor\tnázev\takordů\tneznámých\ttóniny\n");
+            for (Future<String> future : futures) {
+                report.write(future.get());
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            double throughput = files.size() / seconds;
+            report.write(String.format("#%d skladeb za %.2f s, %.1f skladeb/s%n", files.size(), seconds, throughput));
+            report.flush();
+            return throughput;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException(ex);
+        } catch (ExecutionException ex) {
+            throw ex.getCause() instanceof IOException ? (IOException) ex.getCause() : new IOException(ex.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Finds the best keys of a song and formats its line of the report.
+     */
+    private static String analyze(Song song) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(song.getPath()).append('\t').append(song.getTitle()).append('\t')
+                .append(song.getChords().size()).append('\t').append(song.getUnknown());
+        List<WeightedScale> result = ChordAnalyzer.analyze(song.getChords().toArray(new Chord[0]));
+        for (int k = 0; k < REPORTED_KEYS && k < result.size(); k++) {
+            sb.append('\t').append(result.get(k)).append(' ').append(result.get(k).getAccuracy()).append(" %");
+        }
+        return sb.append('\n').toString();
+    }
+}
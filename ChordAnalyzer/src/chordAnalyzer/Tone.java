@@ -10,6 +10,21 @@ public enum Tone {
 
     C, Cis, D, Dis, E, F, Fis, G, Gis, A, Bb, B;
 
+    /**
+     * Cached copy of <code>values()</code>, which would otherwise clone the array on every call.
+     */
+    private static final Tone[] VALUES = values();
+
+    /**
+     * Returns the Tone lying given number of semitones above C. The number is taken modulo 12, so that any
+     * sum of a root and an interval from a tonal mask can be passed directly.
+     * @param semitones number of semitones above C
+     * @return Tone corresponding to the number of semitones
+     */
+    public static Tone fromSemitones(int semitones) {
+        return VALUES[((semitones % 12) + 12) % 12];
+    }
+
     /**
      * Returns musical notation of each Tone using "sharp" symbol # instead of
      * -is suffix.
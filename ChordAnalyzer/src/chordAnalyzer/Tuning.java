@@ -0,0 +1,82 @@
+package chordAnalyzer;
+
+/**
+ * Structure representing a tuning of a guitar, given by a name and tones of open strings from the highest string to the lowest one. Besides the
+ * usual six-string tunings, seven- and eight-string instruments are supported by simply giving more strings.
+ */
+public class Tuning {
+
+    /**
+     * Standard tuning of a six-string guitar.
+     */
+    public static final Tuning STANDARD = new Tuning("Standardní (E)", Tone.E, Tone.B, Tone.G, Tone.D, Tone.A, Tone.E);
+    /**
+     * Tunings offered in the GUI.
+     */
+    public static final Tuning[] PRESETS = new Tuning[]{
+        STANDARD,
+        new Tuning("Drop D", Tone.E, Tone.B, Tone.G, Tone.D, Tone.A, Tone.D),
+        new Tuning("DADGAD", Tone.D, Tone.A, Tone.G, Tone.D, Tone.A, Tone.D),
+        new Tuning("Open G", Tone.D, Tone.B, Tone.G, Tone.D, Tone.G, Tone.D),
+        new Tuning("7 strun (B)", Tone.E, Tone.B, Tone.G, Tone.D, Tone.A, Tone.E, Tone.B),
+        new Tuning("8 strun (F#)", Tone.E, Tone.B, Tone.G, Tone.D, Tone.A, Tone.E, Tone.B, Tone.Fis)
+    };
+
+    private String name;
+    private Tone[] strings;
+
+    /**
+     * Default constructor.
+     *
+     * @param name name of the tuning
+     * @param strings tones of open strings from the highest string to the lowest
+     */
+    public Tuning(String name, Tone... strings) {
+        this.name = name;
+        this.strings = strings.clone();
+    }
+
+    /**
+     * Gets tones of open strings.
+     *
+     * @return tones of open strings from the highest string to the lowest
+     */
+    public Tone[] getStrings() {
+        return strings.clone();
+    }
+
+    /**
+     * Gets number of strings.
+     *
+     * @return number of strings
+     */
+    public int size() {
+        return strings.length;
+    }
+
+    /**
+     * Computes tones on all the strings and frets as a matrix of numbers of semitones above C, indexed by string and fret.
+     *
+     * @param frets number of frets
+     * @return matrix of tones with <code>frets + 1</code> columns, the first one for open strings
+     */
+    public int[][] getToneMatrix(int frets) {
+        int[][] matrix = new int[strings.length][frets + 1];
+        for (int j = 0; j < strings.length; j++) {
+            for (int i = 0; i <= frets; i++) {
+                matrix[j][i] = (strings[j].ordinal() + i) % 12;
+            }
+        }
+        return matrix;
+    }
+
+    /**
+     * Returns the name of this tuning.
+     *
+     * @return name of the tuning
+     */
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,162 @@
+package chordAnalyzer;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Voice-leading distance between chords, i.e. the smallest total number of semitones the voices have to move to change one chord into
+ * another. Each tone of the first chord moves to the nearest way round the octave to some tone of the second chord, every tone of the second
+ * chord has to be reached, and voices do not cross, so a tone may be doubled or two voices may merge when the chords have different sizes.
+ * For example C major to A minor costs 2 (G moves to A), C major to G7 costs 4.
+ * <br/>
+ * The distance of two pitch class sets is found by dynamic programming over their tones sorted around the octave, once for every pair of
+ * tones where the pairing may begin. It depends only on the two chord types and the interval between their roots, so it is computed once for
+ * every such triple and remembered; a progression of thousands of chords then only needs one table lookup per pair of consecutive chords.
+ */
+public class VoiceLeading {
+
+    private final int[] chordBits;
+    private final Map<String, Integer> types = new HashMap<>();
+    //distances indexed by (type of the first chord * number of types + type of the second chord) * 12 + interval of the roots, -1 if unknown
+    private final short[] memo;
+
+    /**
+     * Constructor.
+     *
+     * @param chordNames names of known chord types in the order of the file <code>chords</code>
+     * @param chordBits tonal masks of known chord types as 12-bit pitch class sets, in the same order
+     */
+    public VoiceLeading(String[] chordNames, int[] chordBits) {
+        this.chordBits = chordBits.clone();
+        for (int i = 0; i < chordNames.length; i++) {
+            types.put(chordNames[i], i);
+        }
+        memo = new short[chordBits.length * chordBits.length * 12];
+        Arrays.fill(memo, (short) -1);
+    }
+
+    /**
+     * Computes the voice-leading distance of two pitch class sets.
+     *
+     * @param from 12-bit pitch class set of the first chord, not empty
+     * @param to 12-bit pitch class set of the second chord, not empty
+     * @return total movement of the voices in semitones
+     */
+    public static int distance(int from, int to) {
+        int[] a = tones(from);
+        int[] b = tones(to);
+        int m = a.length;
+        int n = b.length;
+        int[] cost = new int[m * n];
+        int best = Integer.MAX_VALUE;
+        for (int ra = 0; ra < m; ra++) {
+            for (int rb = 0; rb < n; rb++) {
+                best = Math.min(best, align(a, ra, b, rb, cost));
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Finds the cheapest voice leading which pairs the tones of both chords in order around the octave, beginning with the given tones.
+     */
+    private static int align(int[] a, int ra, int[] b, int rb, int[] cost) {
+        int m = a.length;
+        int n = b.length;
+        for (int i = 0; i < m; i++) {
+            for (int j = 0; j < n; j++) {
+                int d = Math.abs(a[(ra + i) % m] - b[(rb + j) % n]);
+                d = Math.min(d, 12 - d);
+                int previous;
+                if (i == 0 && j == 0) {
+                    previous = 0;
+                } else if (i == 0) {
+                    previous = cost[j - 1];
+                } else if (j == 0) {
+                    previous = cost[(i - 1) * n];
+                } else {
+                    //the voice moves to the next tone, or one of the two tones is doubled
+                    previous = Math.min(cost[(i - 1) * n + j - 1], Math.min(cost[(i - 1) * n + j], cost[i * n + j - 1]));
+                }
+                cost[i * n + j] = previous + d;
+            }
+        }
+        return cost[m * n - 1];
+    }
+
+    private static int[] tones(int bits) {
+        int[] result = new int[Integer.bitCount(bits)];
+        int counter = 0;
+        for (int i = 0; i < 12; i++) {
+            if ((bits & (1 << i)) != 0) {
+                result[counter++] = i;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets the voice-leading distance of two chords given by their types and roots.
+     *
+     * @param fromType index of the type of the first chord in the order of the file <code>chords</code>
+     * @param fromRoot root of the first chord in semitones above C
+     * @param toType index of the type of the second chord
+     * @param toRoot root of the second chord in semitones above C
+     * @return total movement of the voices in semitones
+     */
+    public int distance(int fromType, int fromRoot, int toType, int toRoot) {
+        int interval = ((toRoot - fromRoot) % 12 + 12) % 12;
+        int key = (fromType * chordBits.length + toType) * 12 + interval;
+        int result = memo[key];
+        if (result == -1) {
+            result = distance(chordBits[fromType], Scale.rotate(chordBits[toType], interval));
+            //a short is written atomically, so concurrent callers at worst compute the same value twice
+            memo[key] = (short) result;
+        }
+        return result;
+    }
+
+    /**
+     * Gets the voice-leading distance of two chords.
+     *
+     * @param from first chord, of a known type
+     * @param to second chord, of a known type
+     * @return total movement of the voices in semitones
+     */
+    public int distance(Chord from, Chord to) {
+        return distance(types.get(from.getName()), from.getRoot().ordinal(), types.get(to.getName()), to.getRoot().ordinal());
+    }
+
+    /**
+     * Gets the voice-leading distances between consecutive chords of a progression.
+     *
+     * @param chords progression of chords of known types
+     * @return array one shorter than the progression, the i-th distance is between the i-th and the next chord
+     */
+    public int[] progression(Chord[] chords) {
+        int[] result = new int[Math.max(0, chords.length - 1)];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = distance(chords[i], chords[i + 1]);
+        }
+        return result;
+    }
+
+    /**
+     * Gets the voice-leading distances from a chord to alternative chords, such as the suitable chords of a scale.
+     *
+     * @param from chord of a known type
+     * @param chords chords of known types, for example the result of <code>ChordAnalyzer.findSuitableChords</code>
+     * @return distances in the same arrangement as the chords
+     */
+    public int[][] alternatives(Chord from, Chord[][] chords) {
+        int[][] result = new int[chords.length][];
+        for (int i = 0; i < chords.length; i++) {
+            result[i] = new int[chords[i].length];
+            for (int j = 0; j < chords[i].length; j++) {
+                result[i][j] = distance(from, chords[i][j]);
+            }
+        }
+        return result;
+    }
+}
@@ -5,8 +5,10 @@ package chordAnalyzer;
  */
 public class WeightedScale extends Scale implements Comparable<WeightedScale> {
 
+        private final Scale scale;
         private Tone root;
         private double accuracy;
+        private volatile Tone[] tones;
 
         /**
          * Default constructor. Takes a {@link Scale} object, a {@link Tone} object defining the root of the scale and the scale accuracy given as a floating point number between 0 and 1.
@@ -17,6 +19,7 @@ public class WeightedScale extends Scale implements Comparable<WeightedScale> {
          */
         public WeightedScale(Scale scale, Tone root, double accuracy) {
             super(scale.toString(), scale.getMask());
+            this.scale = scale;
             this.root = root;
             this.accuracy = accuracy;
 
@@ -40,6 +43,14 @@ public class WeightedScale extends Scale implements Comparable<WeightedScale> {
             return (int) (accuracy * 100);
         }
         
+        /**
+         * Gets the scale this WeightedScale was constructed from, e.g. the scale of the catalog <code>scales</code>.
+         * @return scale without a root
+         */
+        public Scale getScale() {
+            return scale;
+        }
+
         /**
          * Gets root tone of this scale.
          * @return root tone of the scale
@@ -49,16 +60,20 @@ public class WeightedScale extends Scale implements Comparable<WeightedScale> {
         }
 
         /**
-         * Gets array of {@link Tone}s in this scale.
+         * Gets array of {@link Tone}s in this scale. The array is computed on the first call and shared afterwards,
+         * so it must not be modified.
          * @return array of {@link Tone}
          */
         public Tone[] getTones() {
-            Tone[] result = new Tone[super.getMask().length];
-            int counter = 0;
-            for (int i : super.getMask()) {
-                result[counter++] = Tone.values()[(root.ordinal() + i) % 12];
+            if (tones == null) {
+                Tone[] result = new Tone[super.getMask().length];
+                int counter = 0;
+                for (int i : super.getMask()) {
+                    result[counter++] = Tone.fromSemitones(root.ordinal() + i);
+                }
+                tones = result;
             }
-            return result;
+            return tones;
         }
 
         /**